@@ -4,10 +4,16 @@ import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.platform.app.InstrumentationRegistry
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.TimeoutCancellationException
 import kotlinx.coroutines.cancelAndJoin
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onSubscription
 import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
@@ -81,6 +87,177 @@ class ConversationsTest : BaseInstrumentedTest() {
         assertEquals(runBlocking { caroClient.conversations.listGroups().size }, 1)
     }
 
+    @Test
+    fun testCanListConversationSummaries() =
+        runBlocking {
+            val group = boClient.conversations.newGroup(listOf(caroClient.inboxId), groupName = "Summary")
+            val dm = boClient.conversations.findOrCreateDm(caroClient.inboxId)
+            group.send("gm")
+            dm.send("hi")
+            dm.send("there")
+
+            caroClient.conversations.syncAllConversations()
+            val summaries = caroClient.conversations.summaries()
+            assertEquals(2, summaries.size)
+
+            val groupSummary = summaries.first { it.id == group.id }
+            assertEquals(Conversation.Type.GROUP, groupSummary.type)
+            assertEquals("Summary", groupSummary.name)
+            assertEquals("gm", groupSummary.lastMessage?.body)
+            assertEquals(1L, groupSummary.unreadCount)
+
+            val dmSummary = summaries.first { it.id == dm.id }
+            assertEquals(Conversation.Type.DM, dmSummary.type)
+            assertEquals(null, dmSummary.name)
+            assertEquals("there", dmSummary.lastMessage?.body)
+            assertEquals(2L, dmSummary.unreadCount)
+            assertEquals(ConsentState.UNKNOWN, dmSummary.consentState)
+        }
+
+    @Test
+    fun testCanBroadcastToManyConversations() =
+        runBlocking {
+            val group = boClient.conversations.newGroup(listOf(caroClient.inboxId))
+            val dm = boClient.conversations.findOrCreateDm(alixClient.inboxId)
+
+            val summary =
+                boClient.conversations.broadcast(
+                    "announcement",
+                    listOf(group.id, dm.id, "not-a-conversation"),
+                    BroadcastOptions(concurrency = 2),
+                )
+
+            assertEquals(3, summary.results.size)
+            assertEquals(setOf(group.id, dm.id), summary.succeeded.map { it.conversationId }.toSet())
+            assertEquals(listOf("not-a-conversation"), summary.failed.map { it.conversationId })
+            assertEquals("announcement", group.messages(limit = 1).first().body)
+            assertEquals("announcement", dm.messages(limit = 1).first().body)
+            assertTrue(summary.maxLatencyMs >= summary.medianLatencyMs)
+        }
+
+    @Test
+    fun testOutboxPublishesStagedMessagesInBatches() {
+        val group = runBlocking { boClient.conversations.newGroup(listOf(caroClient.inboxId)) }
+        val conversation = Conversation.Group(group)
+
+        val outbox = boClient.outbox(OutboxOptions(flushDelayMs = 100, maxBatchSize = 3))
+        lateinit var messageIds: List<String>
+        val published =
+            runBlocking {
+                withTimeout(10.seconds) {
+                    outbox.events
+                        .onSubscription {
+                            messageIds = listOf("one", "two", "three").map { outbox.send(conversation, it) }
+                        }.filter { it.state == OutboxDeliveryState.PUBLISHED }
+                        .take(3)
+                        .toList()
+                        .map { it.messageId }
+                }
+            }
+
+        assertEquals(messageIds.toSet(), published.toSet())
+        assertEquals(
+            listOf("one", "two", "three"),
+            runBlocking {
+                group
+                    .messages(deliveryStatus = DecodedMessage.MessageDeliveryStatus.PUBLISHED)
+                    .map { it.body }
+                    .reversed()
+                    .takeLast(3)
+            },
+        )
+    }
+
+    @Test
+    fun testMessageProcessorPreservesOrderPerConversation() {
+        val group = runBlocking { caroClient.conversations.newGroup(listOf(boClient.inboxId)) }
+        val dm = runBlocking { caroClient.conversations.findOrCreateDm(boClient.inboxId) }
+        runBlocking { boClient.conversations.syncAllConversations() }
+
+        val handled = java.util.concurrent.ConcurrentHashMap<String, MutableList<String>>()
+        val processor =
+            MessageProcessor(boClient, workerCount = 2) { message ->
+                handled.getOrPut(message.conversationId) { mutableListOf() }.add(message.body)
+            }
+        val job = processor.start(CoroutineScope(Dispatchers.IO))
+        Thread.sleep(1000)
+        runBlocking {
+            repeat(3) {
+                group.send("group $it")
+                dm.send("dm $it")
+            }
+        }
+        Thread.sleep(2000)
+
+        assertEquals(listOf("group 0", "group 1", "group 2"), handled[group.id])
+        assertEquals(listOf("dm 0", "dm 1", "dm 2"), handled[dm.id])
+        assertEquals(6L, processor.processedCount)
+        assertTrue(processor.checkpoint.value != null)
+        runBlocking { job.cancelAndJoin() }
+    }
+
+    // Runs [action] once subscribed to [LiveConversationList.events] and waits for an event
+    // matching [predicate].
+    private fun LiveConversationList.awaitEvent(
+        action: suspend () -> Unit,
+        predicate: (ConversationListEvent) -> Boolean,
+    ): ConversationListEvent =
+        runBlocking {
+            withTimeout(10.seconds) {
+                events.onSubscription { action() }.first(predicate)
+            }
+        }
+
+    @Test
+    fun testLiveConversationListStaysOrdered() {
+        val group = runBlocking { boClient.conversations.newGroup(listOf(caroClient.inboxId)) }
+        val dm = runBlocking { boClient.conversations.findOrCreateDm(caroClient.inboxId) }
+        runBlocking { dm.send("first") }
+
+        val liveList = LiveConversationList(boClient)
+        lateinit var job: Job
+        liveList.awaitEvent({ job = liveList.start(CoroutineScope(Dispatchers.IO)) }) {
+            it is ConversationListEvent.Reloaded
+        }
+        assertEquals(listOf(dm.id, group.id), runBlocking { liveList.snapshot().map { it.id } })
+
+        liveList.awaitEvent({ group.send("newer") }) {
+            it is ConversationListEvent.Moved && it.item.id == group.id && it.item.lastMessage?.body == "newer"
+        }
+        val items = runBlocking { liveList.snapshot() }
+        assertEquals(listOf(group.id, dm.id), items.map { it.id })
+        assertEquals("newer", items.first().lastMessage?.body)
+
+        lateinit var newGroup: Group
+        liveList.awaitEvent({ newGroup = caroClient.conversations.newGroup(listOf(boClient.inboxId)) }) {
+            it is ConversationListEvent.Inserted && it.item.id == newGroup.id
+        }
+        assertEquals(3, runBlocking { liveList.size() })
+        runBlocking { job.cancelAndJoin() }
+    }
+
+    @Test
+    fun testLiveConversationListFiltersStreamedConversationsByConsent() {
+        val liveList = LiveConversationList(boClient, consentStates = listOf(ConsentState.UNKNOWN))
+        lateinit var job: Job
+        liveList.awaitEvent({ job = liveList.start(CoroutineScope(Dispatchers.IO)) }) {
+            it is ConversationListEvent.Reloaded
+        }
+
+        // Bo's own group is allowed, so only the group Caro adds Bo to is listed.
+        lateinit var ownGroup: Group
+        lateinit var invitedGroup: Group
+        liveList.awaitEvent({
+            ownGroup = boClient.conversations.newGroup(listOf(caroClient.inboxId))
+            invitedGroup = caroClient.conversations.newGroup(listOf(boClient.inboxId))
+        }) {
+            it is ConversationListEvent.Inserted && it.item.id == invitedGroup.id
+        }
+        assertEquals(listOf(invitedGroup.id), runBlocking { liveList.snapshot().map { it.id } })
+        assertEquals(ConsentState.ALLOWED, runBlocking { ownGroup.consentState() })
+        runBlocking { job.cancelAndJoin() }
+    }
+
     @Test
     fun testsCanListConversationsAndCheckCommitLogForkStatus() {
         runBlocking { boClient.conversations.findOrCreateDm(caroClient.inboxId) }
@@ -688,4 +865,29 @@ class ConversationsTest : BaseInstrumentedTest() {
 
         job.cancel()
     }
+
+    @Test
+    fun testResilientStreamBackfillsMessagesMissedWhileDown() =
+        runBlocking {
+            val group = alixClient.conversations.newGroup(listOf(boClient.inboxId))
+            boClient.conversations.sync()
+            boClient.conversations.syncAllConversations()
+            val watermarkNs = System.currentTimeMillis() * 1_000_000
+
+            // Sent while Bo's stream is down, without Bo syncing: one into a group Bo already has,
+            // whose local last activity predates the outage, and one into a group Bo hasn't seen.
+            group.send("missed in existing group")
+            alixClient.conversations.newGroup(listOf(boClient.inboxId)).send("missed in new group")
+
+            val missed =
+                withTimeout(30.seconds) {
+                    boClient.conversations
+                        .streamAllMessagesResilient(startWatermarkNs = watermarkNs)
+                        .map { it.body }
+                        .filter { it.startsWith("missed") }
+                        .take(2)
+                        .toList()
+                }
+            assertEquals(setOf("missed in existing group", "missed in new group"), missed.toSet())
+        }
 }
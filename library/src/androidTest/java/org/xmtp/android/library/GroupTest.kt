@@ -4,12 +4,18 @@ import androidx.test.ext.junit.runners.AndroidJUnit4
 import app.cash.turbine.test
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.test.runTest
+import kotlinx.coroutines.withContext
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertNull
 import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -723,6 +729,34 @@ class GroupTest : BaseInstrumentedTest() {
         assertEquals(runBlocking { sameGroup.messages(afterNs = message?.sentAtNs) }.size, 2)
     }
 
+    @Test
+    fun testCanPageGroupMessages() =
+        runBlocking {
+            val group = boClient.conversations.newGroup(listOf(alixClient.inboxId))
+            repeat(7) { group.send("message $it") }
+            val allMessages = group.messages()
+            assertEquals(8, allMessages.size)
+
+            val pager = group.messagePager(pageSize = 3, prefetchDistance = 2)
+            val pages = mutableListOf<MessagePage>()
+            while (true) {
+                pages.add(pager.loadNext() ?: break)
+            }
+            pager.close()
+
+            assertEquals(listOf(3, 3, 2), pages.map { it.messages.size })
+            assertEquals(false, pages.last().hasMore)
+            assertEquals(allMessages.map { it.id }, pages.flatMap { it.messages }.map { it.id })
+
+            val ascending =
+                group
+                    .messagePager(pageSize = 5, direction = DecodedMessage.SortDirection.ASCENDING)
+                    .pages()
+                    .toList()
+                    .flatMap { it.messages }
+            assertEquals(allMessages.reversed().map { it.id }, ascending.map { it.id })
+        }
+
     @Test
     fun testCanSendContentTypesToGroup() {
         Client.register(codec = ReactionCodec())
@@ -778,6 +812,64 @@ class GroupTest : BaseInstrumentedTest() {
             }
         }
 
+    @Test
+    fun testCanResumeGroupStreamFromWatermark() =
+        runTest {
+            // Real network I/O, so run it on real time rather than the test scheduler's.
+            withContext(Dispatchers.IO) { resumeGroupStreamFromWatermark() }
+        }
+
+    private suspend fun resumeGroupStreamFromWatermark() {
+        val group = boClient.conversations.newGroup(listOf(alixClient.inboxId))
+        alixClient.conversations.sync()
+        val alixGroup = alixClient.conversations.listGroups().first()
+        alixGroup.send("before")
+        group.sync()
+        val watermark = group.messages().first { it.body == "before" }.insertedAtNs
+        alixGroup.send("missed")
+        group.sync()
+
+        group.streamMessagesResilient(startWatermarkNs = watermark).test {
+            assertEquals("missed", awaitItem().body)
+            alixGroup.send("live")
+            assertEquals("live", awaitItem().body)
+        }
+    }
+
+    @Test
+    fun testCanShareOneStreamAcrossConversations() {
+        val group = runBlocking { boClient.conversations.newGroup(listOf(alixClient.inboxId)) }
+        val otherGroup = runBlocking { boClient.conversations.newGroup(listOf(caroClient.inboxId)) }
+
+        val groupMessages = mutableListOf<DecodedMessage>()
+        val otherGroupMessages = mutableListOf<DecodedMessage>()
+        val jobs =
+            listOf(
+                CoroutineScope(Dispatchers.IO).launch {
+                    group.streamSharedMessages().collect { groupMessages.add(it) }
+                },
+                CoroutineScope(Dispatchers.IO).launch {
+                    otherGroup.streamSharedMessages().collect { otherGroupMessages.add(it) }
+                },
+            )
+        Thread.sleep(1000)
+        assertEquals(2, boClient.streamHub.activeConversationCount)
+        assertTrue(boClient.streamHub.isStreaming)
+
+        runBlocking {
+            group.send("hi")
+            otherGroup.send("hey")
+            otherGroup.send("hey again")
+        }
+        Thread.sleep(1000)
+        assertEquals(listOf("hi"), groupMessages.map { it.body })
+        assertEquals(listOf("hey", "hey again"), otherGroupMessages.map { it.body })
+
+        runBlocking { jobs.forEach { it.cancelAndJoin() } }
+        assertEquals(0, boClient.streamHub.activeConversationCount)
+        assertFalse(boClient.streamHub.isStreaming)
+    }
+
     @Test
     fun testCanStreamAllGroupMessages() {
         val group = runBlocking { caroClient.conversations.newGroup(listOf(alixClient.inboxId)) }
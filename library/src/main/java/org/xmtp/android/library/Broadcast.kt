@@ -0,0 +1,66 @@
+package org.xmtp.android.library
+
+/**
+ * @param sendOptions Content type and compression, as for a regular send.
+ * @param concurrency How many conversations are published to at the same time.
+ */
+data class BroadcastOptions(
+    val sendOptions: SendOptions? = null,
+    val concurrency: Int = DEFAULT_CONCURRENCY,
+) {
+    init {
+        require(concurrency > 0) { "concurrency must be greater than 0" }
+    }
+
+    companion object {
+        const val DEFAULT_CONCURRENCY = 16
+    }
+}
+
+/**
+ * Outcome of a broadcast for a single conversation.
+ *
+ * @param messageId The ID of the sent message, or null if sending failed.
+ * @param error Why sending failed, or null on success.
+ * @param latencyMs Time spent sending to this conversation, excluding time queued behind others.
+ */
+data class BroadcastResult(
+    val conversationId: String,
+    val messageId: String?,
+    val error: Exception?,
+    val latencyMs: Long,
+) {
+    val isSuccess: Boolean
+        get() = error == null
+}
+
+/**
+ * Per-conversation results of [Conversations.broadcast] and latency figures across them.
+ */
+data class BroadcastSummary(
+    val results: List<BroadcastResult>,
+    val durationMs: Long,
+) {
+    val succeeded: List<BroadcastResult>
+        get() = results.filter { it.isSuccess }
+
+    val failed: List<BroadcastResult>
+        get() = results.filterNot { it.isSuccess }
+
+    private val sortedLatencies: List<Long> by lazy { results.map { it.latencyMs }.sorted() }
+
+    val medianLatencyMs: Long
+        get() = percentile(0.50)
+
+    val p95LatencyMs: Long
+        get() = percentile(0.95)
+
+    val maxLatencyMs: Long
+        get() = sortedLatencies.lastOrNull() ?: 0
+
+    private fun percentile(fraction: Double): Long {
+        if (sortedLatencies.isEmpty()) return 0
+        val index = ((sortedLatencies.size - 1) * fraction).toInt()
+        return sortedLatencies[index]
+    }
+}
@@ -112,12 +112,23 @@ class Client(
         )
     val debugInformation: XMTPDebugInformation =
         XMTPDebugInformation(ffiClient = libXMTPClient)
+    val streamHub: StreamHub by lazy { StreamHub(conversations) }
+    val outbox: Outbox by lazy { Outbox(this) }
+
+    /**
+     * Creates an [Outbox] with its own [options], queue and [Outbox.events], independent of the
+     * default [outbox]. Keep the returned instance for as long as it is used.
+     */
+    fun outbox(options: OutboxOptions): Outbox = Outbox(this, options)
+
+    val decodedMessageCache: DecodedMessageCache = DecodedMessageCache()
     val libXMTPVersion: String = getVersionInfo()
     private val ffiClient: FfiXmtpClient = libXMTPClient
 
     companion object {
         private const val TAG = "Client"
 
+        @Volatile
         var codecRegistry =
             run {
                 val registry = CodecRegistry()
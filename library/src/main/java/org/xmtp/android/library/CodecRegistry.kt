@@ -2,32 +2,213 @@ package org.xmtp.android.library
 
 import org.xmtp.android.library.codecs.ContentCodec
 import org.xmtp.android.library.codecs.ContentTypeId
+import org.xmtp.android.library.codecs.EncodedContent
 import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.codecs.compress
 import org.xmtp.android.library.codecs.id
+import java.util.AbstractMap.SimpleEntry
 
-data class CodecRegistry(
-    val codecs: MutableMap<String, ContentCodec<*>> = mutableMapOf(),
+/**
+ * Registry of the [ContentCodec]s used to encode and decode message content.
+ *
+ * Lookups run once per decoded message, often on stream callback threads while the app may still
+ * be registering codecs, so the registry is copy-on-write: [register] publishes a new immutable
+ * snapshot and [find] reads the current one without locking or allocating. Content types are
+ * matched through an open-addressed table keyed by a hash precomputed from their four fields,
+ * with a reference check first so the shared `ContentType*` constants resolve without comparing
+ * strings. Unknown types fall back to a single shared [TextCodec].
+ */
+class CodecRegistry(
+    codecs: MutableMap<String, ContentCodec<*>> = mutableMapOf(),
 ) {
+    private class Entry(
+        val contentType: ContentTypeId,
+        val hash: Int,
+        val codec: ContentCodec<*>,
+    )
+
+    private class Snapshot(
+        val byId: Map<String, ContentCodec<*>>,
+    ) {
+        private val table: Array<Entry?>
+        private val mask: Int
+
+        init {
+            var capacity = 8
+            while (capacity < byId.size * 2) capacity = capacity shl 1
+            table = arrayOfNulls(capacity)
+            mask = capacity - 1
+            byId.values.forEach { codec ->
+                val contentType = codec.contentType
+                val hash = hash(contentType)
+                var index = hash and mask
+                while (table[index] != null) index = (index + 1) and mask
+                table[index] = Entry(contentType, hash, codec)
+            }
+        }
+
+        fun find(contentType: ContentTypeId): ContentCodec<*>? {
+            val hash = hash(contentType)
+            var index = hash and mask
+            while (true) {
+                val entry = table[index] ?: return null
+                // Senders and codecs pass the shared constants, so most lookups stop at the reference check.
+                if (entry.contentType === contentType ||
+                    (entry.hash == hash && entry.contentType.sameType(contentType))
+                ) {
+                    return entry.codec
+                }
+                index = (index + 1) and mask
+            }
+        }
+    }
+
+    @Volatile
+    private var snapshot = Snapshot(LinkedHashMap(codecs))
+
+    /**
+     * A live view of the registered codecs keyed by [ContentTypeId.id]. Changes made through it
+     * are published like [register] calls; the map passed to the constructor is copied and no
+     * longer tracked.
+     */
+    @Deprecated("Use register() to add codecs and find() or findFromId() to look them up")
+    val codecs: MutableMap<String, ContentCodec<*>>
+        get() = view
+
+    private val view: MutableMap<String, ContentCodec<*>> = CodecsView()
+
     fun register(codec: ContentCodec<*>) {
-        codecs[codec.contentType.id] = codec
+        update { it[codec.contentType.id] = codec }
     }
 
+    private fun <R> update(change: (MutableMap<String, ContentCodec<*>>) -> R): R =
+        synchronized(this) {
+            val codecs = LinkedHashMap(snapshot.byId)
+            change(codecs).also { snapshot = Snapshot(codecs) }
+        }
+
     fun find(contentType: ContentTypeId?): ContentCodec<*> {
-        contentType?.let {
-            val codec = codecs[it.id]
-            if (codec != null) {
-                return codec
+        if (contentType == null) return FALLBACK_CODEC
+        return snapshot.find(contentType) ?: FALLBACK_CODEC
+    }
+
+    fun findFromId(contentTypeString: String): ContentCodec<*> = snapshot.byId[contentTypeString] ?: FALLBACK_CODEC
+
+    /**
+     * Encodes [content] with the codec for [SendOptions.contentType], applying its fallback text
+     * and the requested compression.
+     */
+    internal fun <T> encodeContent(
+        content: T,
+        options: SendOptions?,
+    ): Pair<EncodedContent, MessageVisibilityOptions> {
+        val codec = find(options?.contentType)
+
+        fun <Codec : ContentCodec<T>> encode(
+            codec: Codec,
+            content: T,
+        ): EncodedContent = codec.encode(content)
+        try {
+            @Suppress("UNCHECKED_CAST")
+            val typedCodec = codec as ContentCodec<T>
+            var encoded = encode(typedCodec, content)
+            val fallback = codec.fallback(content)
+            if (!fallback.isNullOrBlank()) {
+                encoded = encoded.toBuilder().also { it.fallback = fallback }.build()
+            }
+            val compression = options?.compression
+            if (compression != null) {
+                encoded = encoded.compress(compression)
             }
+            val sendOpts = MessageVisibilityOptions(shouldPush = typedCodec.shouldPush(content))
+            return Pair(encoded, sendOpts)
+        } catch (e: Exception) {
+            throw XMTPException("Codec type is not registered")
         }
-        return TextCodec()
     }
 
-    fun findFromId(contentTypeString: String): ContentCodec<*> {
-        for ((_, codec) in codecs) {
-            if (codec.contentType.id == contentTypeString) {
-                return codec
-            }
+    @Deprecated("CodecRegistry is no longer a data class", ReplaceWith("CodecRegistry(codecs)"))
+    fun copy(codecs: MutableMap<String, ContentCodec<*>> = LinkedHashMap(snapshot.byId)): CodecRegistry =
+        CodecRegistry(codecs)
+
+    @Deprecated("CodecRegistry is no longer a data class", ReplaceWith("codecs"))
+    operator fun component1(): MutableMap<String, ContentCodec<*>> = view
+
+    override fun equals(other: Any?): Boolean = other is CodecRegistry && snapshot.byId == other.snapshot.byId
+
+    override fun hashCode(): Int = snapshot.byId.hashCode()
+
+    override fun toString(): String = "CodecRegistry(codecs=${snapshot.byId})"
+
+    private inner class CodecsView : AbstractMutableMap<String, ContentCodec<*>>() {
+        override val entries: MutableSet<MutableMap.MutableEntry<String, ContentCodec<*>>>
+            get() =
+                object : AbstractMutableSet<MutableMap.MutableEntry<String, ContentCodec<*>>>() {
+                    override val size: Int
+                        get() = snapshot.byId.size
+
+                    override fun add(element: MutableMap.MutableEntry<String, ContentCodec<*>>): Boolean =
+                        put(element.key, element.value) !== element.value
+
+                    override fun iterator(): MutableIterator<MutableMap.MutableEntry<String, ContentCodec<*>>> =
+                        object : MutableIterator<MutableMap.MutableEntry<String, ContentCodec<*>>> {
+                            private val delegate = snapshot.byId.entries.iterator()
+                            private var last: String? = null
+
+                            override fun hasNext(): Boolean = delegate.hasNext()
+
+                            override fun next(): MutableMap.MutableEntry<String, ContentCodec<*>> {
+                                val entry = delegate.next()
+                                last = entry.key
+                                return object : SimpleEntry<String, ContentCodec<*>>(entry) {
+                                    override fun setValue(value: ContentCodec<*>): ContentCodec<*> {
+                                        put(key, value)
+                                        return super.setValue(value)
+                                    }
+                                }
+                            }
+
+                            override fun remove() {
+                                this@CodecsView.remove(checkNotNull(last) { "next() has not been called" })
+                                last = null
+                            }
+                        }
+                }
+
+        override val size: Int
+            get() = snapshot.byId.size
+
+        override fun get(key: String): ContentCodec<*>? = snapshot.byId[key]
+
+        override fun containsKey(key: String): Boolean = snapshot.byId.containsKey(key)
+
+        override fun put(
+            key: String,
+            value: ContentCodec<*>,
+        ): ContentCodec<*>? = update { it.put(key, value) }
+
+        override fun remove(key: String): ContentCodec<*>? = update { it.remove(key) }
+
+        override fun clear() {
+            update { it.clear() }
         }
-        return TextCodec()
+    }
+
+    private companion object {
+        val FALLBACK_CODEC = TextCodec()
+
+        fun hash(contentType: ContentTypeId): Int {
+            var hash = contentType.authorityId.hashCode()
+            hash = 31 * hash + contentType.typeId.hashCode()
+            hash = 31 * hash + contentType.versionMajor
+            hash = 31 * hash + contentType.versionMinor
+            return hash xor (hash ushr 16)
+        }
+
+        fun ContentTypeId.sameType(other: ContentTypeId): Boolean =
+            versionMajor == other.versionMajor &&
+                versionMinor == other.versionMinor &&
+                typeId == other.typeId &&
+                authorityId == other.authorityId
     }
 }
@@ -37,6 +37,14 @@ sealed class Conversation {
             }
         }
 
+    val typedConversationId: ConversationId
+        get() {
+            return when (this) {
+                is Group -> group.typedConversationId
+                is Dm -> dm.typedConversationId
+            }
+        }
+
     val id: String
         get() {
             return when (this) {
@@ -288,6 +296,7 @@ sealed class Conversation {
         insertedAfterNs: Long? = null,
         insertedBeforeNs: Long? = null,
         sortBy: SortBy = SortBy.SENT_TIME,
+        decodeOptions: DecodeOptions = DecodeOptions(),
     ): List<DecodedMessage> =
         withContext(Dispatchers.IO) {
             when (this@Conversation) {
@@ -303,6 +312,7 @@ sealed class Conversation {
                         insertedAfterNs,
                         insertedBeforeNs,
                         sortBy,
+                        decodeOptions,
                     )
                 is Dm ->
                     dm.messages(
@@ -316,10 +326,41 @@ sealed class Conversation {
                         insertedAfterNs,
                         insertedBeforeNs,
                         sortBy,
+                        decodeOptions,
                     )
             }
         }
 
+    /**
+     * Create a [MessagePager] that walks this conversation's history one page at a time.
+     *
+     * Prefer this over [messages] without a limit for long conversations: each page is a
+     * bounded keyset query and the next [prefetchDistance] pages are loaded in the background.
+     *
+     * @param pageSize Maximum number of messages returned per page.
+     * @param prefetchDistance Number of pages to fetch ahead of the caller.
+     */
+    fun messagePager(
+        pageSize: Int = 50,
+        prefetchDistance: Int = 1,
+        direction: DecodedMessage.SortDirection = DecodedMessage.SortDirection.DESCENDING,
+        deliveryStatus: DecodedMessage.MessageDeliveryStatus =
+            DecodedMessage.MessageDeliveryStatus.ALL,
+        excludedContentTypes: List<FfiContentType>? = null,
+        excludeSenderInboxIds: List<String>? = null,
+        sortBy: SortBy = SortBy.SENT_TIME,
+    ): MessagePager =
+        MessagePager(
+            conversation = this,
+            pageSize = pageSize,
+            prefetchDistance = prefetchDistance,
+            direction = direction,
+            sortBy = sortBy,
+            deliveryStatus = deliveryStatus,
+            excludedContentTypes = excludedContentTypes,
+            excludeSenderInboxIds = excludeSenderInboxIds,
+        )
+
     suspend fun countMessages(
         beforeNs: Long? = null,
         afterNs: Long? = null,
@@ -383,6 +424,7 @@ sealed class Conversation {
         insertedAfterNs: Long? = null,
         insertedBeforeNs: Long? = null,
         sortBy: SortBy = SortBy.SENT_TIME,
+        decodeOptions: DecodeOptions = DecodeOptions(),
     ): List<DecodedMessageV2> =
         withContext(Dispatchers.IO) {
             when (this@Conversation) {
@@ -398,6 +440,7 @@ sealed class Conversation {
                         insertedAfterNs,
                         insertedBeforeNs,
                         sortBy,
+                        decodeOptions,
                     )
 
                 is Dm ->
@@ -412,6 +455,7 @@ sealed class Conversation {
                         insertedAfterNs,
                         insertedBeforeNs,
                         sortBy,
+                        decodeOptions,
                     )
             }
         }
@@ -428,6 +472,7 @@ sealed class Conversation {
         insertedAfterNs: Long? = null,
         insertedBeforeNs: Long? = null,
         sortBy: SortBy = SortBy.SENT_TIME,
+        decodeOptions: DecodeOptions = DecodeOptions(),
     ): List<DecodedMessage> =
         withContext(Dispatchers.IO) {
             when (this@Conversation) {
@@ -443,6 +488,7 @@ sealed class Conversation {
                         insertedAfterNs,
                         insertedBeforeNs,
                         sortBy,
+                        decodeOptions,
                     )
 
                 is Dm ->
@@ -457,6 +503,7 @@ sealed class Conversation {
                         insertedAfterNs,
                         insertedBeforeNs,
                         sortBy,
+                        decodeOptions,
                     )
             }
         }
@@ -507,10 +554,28 @@ sealed class Conversation {
             }
         }
 
-    fun streamMessages(onClose: (() -> Unit)? = null): Flow<DecodedMessage> =
+    fun streamMessages(
+        onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
+    ): Flow<DecodedMessage> =
+        when (this) {
+            is Group -> group.streamMessages(onClose, options)
+            is Dm -> dm.streamMessages(onClose, options)
+        }
+
+    fun streamMessagesResilient(
+        retryOptions: StreamRetryOptions = StreamRetryOptions(),
+        startWatermarkNs: Long? = null,
+    ): Flow<DecodedMessage> =
+        when (this) {
+            is Group -> group.streamMessagesResilient(retryOptions, startWatermarkNs)
+            is Dm -> dm.streamMessagesResilient(retryOptions, startWatermarkNs)
+        }
+
+    fun streamSharedMessages(): Flow<DecodedMessage> =
         when (this) {
-            is Group -> group.streamMessages(onClose)
-            is Dm -> dm.streamMessages(onClose)
+            is Group -> group.streamSharedMessages()
+            is Dm -> dm.streamSharedMessages()
         }
 
     suspend fun getHmacKeys(): Keystore.GetConversationHmacKeysResponse =
@@ -2,12 +2,19 @@ package org.xmtp.android.library
 
 import android.util.Log
 import com.google.protobuf.kotlin.toByteString
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.withContext
+import org.xmtp.android.library.codecs.EncodedContent
 import org.xmtp.android.library.libxmtp.DecodedMessage
 import org.xmtp.android.library.libxmtp.DecodedMessageV2
 import org.xmtp.android.library.libxmtp.DisappearingMessageSettings
@@ -15,6 +22,7 @@ import org.xmtp.android.library.libxmtp.GroupPermissionPreconfiguration
 import org.xmtp.android.library.libxmtp.PermissionPolicySet
 import org.xmtp.android.library.libxmtp.PublicIdentity
 import org.xmtp.proto.keystore.api.v1.Keystore
+import uniffi.xmtpv3.FfiContentType
 import uniffi.xmtpv3.FfiConversation
 import uniffi.xmtpv3.FfiConversationCallback
 import uniffi.xmtpv3.FfiConversationListItem
@@ -54,11 +62,41 @@ data class GroupSyncSummary(
         )
 }
 
+/**
+ * Everything an inbox row needs to render a conversation, gathered in one pass by
+ * [Conversations.summaries].
+ *
+ * @param unreadCount Messages from other members sent after this inbox's last read receipt.
+ */
+data class ConversationSummary(
+    val conversation: Conversation,
+    val id: String,
+    val type: Conversation.Type,
+    val name: String?,
+    val imageUrl: String?,
+    val lastMessage: DecodedMessage?,
+    val lastActivityNs: Long,
+    val unreadCount: Long,
+    val consentState: ConsentState,
+)
+
 data class Conversations(
     var client: Client,
     private val ffiConversations: FfiConversations,
     private val ffiClient: FfiXmtpClient,
 ) {
+    companion object {
+        private const val DEFAULT_SUMMARY_CONCURRENCY = 8
+        const val MAX_SUMMARY_CONCURRENCY = 16
+
+        private val DEFAULT_UNREAD_EXCLUDED_CONTENT_TYPES =
+            listOf(
+                FfiContentType.READ_RECEIPT,
+                FfiContentType.GROUP_MEMBERSHIP_CHANGE,
+                FfiContentType.GROUP_UPDATED,
+            )
+    }
+
     enum class ConversationFilterType {
         ALL,
         GROUPS,
@@ -99,22 +137,14 @@ data class Conversations(
             }
         }
 
-    suspend fun findConversationByTopic(topic: String): Conversation? =
-        withContext(Dispatchers.IO) {
-            val regex = """/xmtp/mls/1/g-(.*?)/proto""".toRegex()
-            val matchResult = regex.find(topic)
-            val conversationId = matchResult?.groupValues?.get(1) ?: ""
-            try {
-                val conversation = ffiClient.conversation(conversationId.hexToByteArray())
-                when (conversation.conversationType()) {
-                    FfiConversationType.GROUP -> Conversation.Group(Group(client, conversation))
-                    FfiConversationType.DM -> Conversation.Dm(Dm(client, conversation))
-                    else -> null
-                }
-            } catch (e: Exception) {
-                null
-            }
-        }
+    /**
+     * Finds the conversation a group message topic belongs to, such as the topic of a push
+     * notification. Returns null for topics that aren't group message topics.
+     */
+    suspend fun findConversationByTopic(topic: String): Conversation? {
+        val groupId = (Topic.parse(topic) as? Topic.groupMessage)?.groupId ?: return null
+        return findConversation(groupId)
+    }
 
     suspend fun findDmByInboxId(inboxId: InboxId): Dm? =
         withContext(Dispatchers.IO) {
@@ -136,7 +166,7 @@ data class Conversations(
     suspend fun findMessage(messageId: String): DecodedMessage? =
         withContext(Dispatchers.IO) {
             try {
-                DecodedMessage.create(ffiClient.message(messageId.hexToByteArray()))
+                client.decodedMessageCache.decode(ffiClient.message(messageId.hexToByteArray()))
             } catch (e: Exception) {
                 null
             }
@@ -552,6 +582,118 @@ data class Conversations(
             ffiConversation.map { it.toConversation() }
         }
 
+    /**
+     * List conversations together with the data needed to render an inbox: name, image,
+     * last message, unread count and consent state.
+     *
+     * The conversations are fetched with a single [list] call, which already carries each
+     * conversation's last message. libxmtp has no batched call for the rest, so read times,
+     * unread count, name, image and consent are still looked up per conversation. Those blocking
+     * FFI calls run on at most [concurrency] threads (capped at [MAX_SUMMARY_CONCURRENCY]) so a
+     * long inbox can't tie up the whole IO pool.
+     *
+     * @param unreadExcludedContentTypes Content types that never count as unread.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    suspend fun summaries(
+        createdAfterNs: Long? = null,
+        createdBeforeNs: Long? = null,
+        lastActivityAfterNs: Long? = null,
+        lastActivityBeforeNs: Long? = null,
+        limit: Int? = null,
+        consentStates: List<ConsentState>? = null,
+        orderBy: ListConversationsOrderBy = ListConversationsOrderBy.LAST_ACTIVITY,
+        unreadExcludedContentTypes: List<FfiContentType> = DEFAULT_UNREAD_EXCLUDED_CONTENT_TYPES,
+        concurrency: Int = DEFAULT_SUMMARY_CONCURRENCY,
+    ): List<ConversationSummary> {
+        require(concurrency > 0) { "concurrency must be greater than 0" }
+        val dispatcher = Dispatchers.IO.limitedParallelism(minOf(concurrency, MAX_SUMMARY_CONCURRENCY))
+        return withContext(Dispatchers.IO) {
+            val conversations =
+                list(
+                    createdAfterNs = createdAfterNs,
+                    createdBeforeNs = createdBeforeNs,
+                    lastActivityAfterNs = lastActivityAfterNs,
+                    lastActivityBeforeNs = lastActivityBeforeNs,
+                    limit = limit,
+                    consentStates = consentStates,
+                    orderBy = orderBy,
+                )
+            conversations
+                .map { conversation ->
+                    async(dispatcher) { conversation.summary(unreadExcludedContentTypes) }
+                }.awaitAll()
+        }
+    }
+
+    private suspend fun Conversation.summary(unreadExcludedContentTypes: List<FfiContentType>): ConversationSummary {
+        val lastReadNs = getLastReadTimes()[client.inboxId]
+        val unreadCount =
+            countMessages(
+                afterNs = lastReadNs,
+                excludedContentTypes = unreadExcludedContentTypes,
+                excludeSenderInboxIds = listOf(client.inboxId),
+            )
+        return ConversationSummary(
+            conversation = this,
+            id = id,
+            type = type,
+            name = (this as? Conversation.Group)?.group?.name(),
+            imageUrl = (this as? Conversation.Group)?.group?.imageUrl(),
+            lastMessage = lastMessage(),
+            lastActivityNs = lastActivityNs,
+            unreadCount = unreadCount,
+            consentState = consentState(),
+        )
+    }
+
+    /**
+     * Sends the same content to many conversations.
+     *
+     * The content is encoded once, then each conversation stages it with an optimistic send and
+     * publishes it, with at most [BroadcastOptions.concurrency] conversations in flight at a time.
+     * A failure in one conversation does not stop the others; check [BroadcastSummary.failed].
+     */
+    suspend fun <T> broadcast(
+        content: T,
+        conversationIds: List<String>,
+        options: BroadcastOptions = BroadcastOptions(),
+    ): BroadcastSummary =
+        withContext(Dispatchers.IO) {
+            val startedAt = System.nanoTime()
+            val (encodedContent, opts) = Client.codecRegistry.encodeContent(content, options.sendOptions)
+            val permits = Semaphore(options.concurrency)
+            val results =
+                conversationIds
+                    .map { conversationId ->
+                        async {
+                            permits.withPermit { broadcastTo(conversationId, encodedContent, opts) }
+                        }
+                    }.awaitAll()
+            BroadcastSummary(results, (System.nanoTime() - startedAt) / 1_000_000)
+        }
+
+    private suspend fun broadcastTo(
+        conversationId: String,
+        encodedContent: EncodedContent,
+        opts: MessageVisibilityOptions,
+    ): BroadcastResult {
+        val startedAt = System.nanoTime()
+        fun elapsedMs() = (System.nanoTime() - startedAt) / 1_000_000
+        return try {
+            val conversation =
+                findConversation(conversationId)
+                    ?: throw XMTPException("Conversation not found: $conversationId")
+            val messageId = conversation.prepareMessage(encodedContent, opts)
+            conversation.publishMessages()
+            BroadcastResult(conversationId, messageId, null, elapsedMs())
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            BroadcastResult(conversationId, null, e, elapsedMs())
+        }
+    }
+
     private suspend fun FfiConversationListItem.toConversation(): Conversation =
         withContext(Dispatchers.IO) {
             when (conversation().conversationType()) {
@@ -580,15 +722,17 @@ data class Conversations(
     fun stream(
         type: ConversationFilterType = ConversationFilterType.ALL,
         onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
     ): Flow<Conversation> =
         callbackFlow {
+            val sink = StreamSink<Conversation>(this, options) { it.typedConversationId }
             val conversationCallback =
                 object : FfiConversationCallback {
                     override fun onConversation(conversation: FfiConversation) {
                         launch(Dispatchers.IO) {
                             when (conversation.conversationType()) {
                                 FfiConversationType.DM ->
-                                    trySend(
+                                    sink.send(
                                         Conversation.Dm(
                                             Dm(
                                                 client,
@@ -597,7 +741,7 @@ data class Conversations(
                                         ),
                                     )
 
-                                else -> trySend(Conversation.Group(Group(client, conversation)))
+                                else -> sink.send(Conversation.Group(Group(client, conversation)))
                             }
                         }
                     }
@@ -623,20 +767,40 @@ data class Conversations(
                     ConversationFilterType.DMS -> ffiConversations.streamDms(conversationCallback)
                 }
 
-            awaitClose { stream.end() }
-        }
+            awaitClose {
+                sink.close()
+                stream.end()
+            }
+        }.withStreamOptions(options)
 
     fun streamAllMessages(
         type: ConversationFilterType = ConversationFilterType.ALL,
         consentStates: List<ConsentState>? = null,
         onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
+    ): Flow<DecodedMessage> = streamAllMessages(type, consentStates, onClose, options, onReady = null)
+
+    /**
+     * [streamAllMessages] that calls [onReady] once the subscription is live.
+     */
+    internal fun streamAllMessages(
+        type: ConversationFilterType,
+        consentStates: List<ConsentState>?,
+        onClose: (() -> Unit)?,
+        options: StreamOptions,
+        onReady: (() -> Unit)?,
     ): Flow<DecodedMessage> =
         callbackFlow {
+            val sink = StreamSink<DecodedMessage>(this, options) { it.typedConversationId }
             val messageCallback =
                 object : FfiMessageCallback {
                     override fun onMessage(message: FfiMessage) {
-                        val decodedMessage = DecodedMessage.create(message)
-                        decodedMessage?.let { trySend(it) }
+                        val decodedMessage = client.decodedMessageCache.decode(message)
+                        if (decodedMessage != null) {
+                            sink.send(decodedMessage)
+                        } else {
+                            sink.decodeFailed()
+                        }
                     }
 
                     override fun onError(error: FfiSubscribeException) {
@@ -671,18 +835,81 @@ data class Conversations(
                             states,
                         )
                 }
+            if (onReady != null) {
+                stream.waitForReady()
+                onReady()
+            }
 
-            awaitClose { stream.end() }
-        }
+            awaitClose {
+                sink.close()
+                stream.end()
+            }
+        }.withStreamOptions(options)
+
+    /**
+     * Like [streamAllMessages], but never ends on its own: when the underlying stream closes it is
+     * reopened with exponential backoff, and messages that arrived while it was down are replayed
+     * (by inserted time) before live delivery resumes.
+     *
+     * Before replaying, welcomes and every conversation matching [consentStates] are synced from
+     * the network, so messages missed during the outage are found even in conversations whose
+     * local last activity predates it and in groups joined while the stream was down.
+     *
+     * @param startWatermarkNs Replay every message inserted after this timestamp before streaming,
+     *                         e.g. the `insertedAtNs` of the last message processed before a restart.
+     */
+    fun streamAllMessagesResilient(
+        type: ConversationFilterType = ConversationFilterType.ALL,
+        consentStates: List<ConsentState>? = null,
+        retryOptions: StreamRetryOptions = StreamRetryOptions(),
+        startWatermarkNs: Long? = null,
+    ): Flow<DecodedMessage> =
+        resilientMessageStream(
+            tag = "XMTP all message stream",
+            options = retryOptions,
+            startWatermarkNs = startWatermarkNs,
+            live = { onReady -> streamAllMessages(type, consentStates, onClose = null, StreamOptions(), onReady) },
+            backfill = { insertedAfterNs ->
+                // Missed messages only reach the local database through a sync, and until then local
+                // last activity doesn't reflect them, so sync everything before picking what to read.
+                sync()
+                syncAllConversations(consentStates)
+                val conversations =
+                    when (type) {
+                        ConversationFilterType.ALL -> list(consentStates = consentStates)
+
+                        ConversationFilterType.GROUPS ->
+                            listGroups(consentStates = consentStates).map { Conversation.Group(it) }
+
+                        ConversationFilterType.DMS ->
+                            listDms(consentStates = consentStates).map { Conversation.Dm(it) }
+                    }
+                conversations
+                    .flatMap {
+                        it.messages(
+                            insertedAfterNs = insertedAfterNs,
+                            direction = DecodedMessage.SortDirection.ASCENDING,
+                            sortBy = DecodedMessage.SortBy.INSERTED_TIME,
+                        )
+                    }.sortedBy { it.insertedAtNs }
+            },
+        )
 
-    fun streamMessageDeletions(onClose: (() -> Unit)? = null): Flow<DecodedMessageV2> =
+    fun streamMessageDeletions(
+        onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
+    ): Flow<DecodedMessageV2> =
         callbackFlow {
+            val sink = StreamSink<DecodedMessageV2>(this, options) { it.typedConversationId }
             val deletionCallback =
                 object : FfiMessageDeletionCallback {
                     override fun onMessageDeleted(message: FfiDecodedMessage) {
+                        client.decodedMessageCache.invalidate(message.id().toHex())
                         val decodedMessage = DecodedMessageV2.create(message)
                         if (decodedMessage != null) {
-                            trySend(decodedMessage)
+                            sink.send(decodedMessage)
+                        } else {
+                            sink.decodeFailed()
                         }
                     }
                 }
@@ -691,9 +918,10 @@ data class Conversations(
 
             awaitClose {
                 onClose?.invoke()
+                sink.close()
                 stream.end()
             }
-        }
+        }.withStreamOptions(options)
 
     suspend fun getHmacKeys(): Keystore.GetConversationHmacKeysResponse =
         withContext(Dispatchers.IO) {
@@ -735,5 +963,9 @@ data class Conversations(
         }
 
     suspend fun deleteMessageLocally(messageId: String) =
-        withContext(Dispatchers.IO) { ffiClient.deleteMessage(messageId.hexToByteArray()) }
+        withContext(Dispatchers.IO) {
+            ffiClient.deleteMessage(messageId.hexToByteArray()).also {
+                client.decodedMessageCache.invalidate(messageId)
+            }
+        }
 }
@@ -2,9 +2,20 @@ package org.xmtp.android.library
 
 import android.util.Log
 import com.google.crypto.tink.subtle.Hkdf
+import com.google.protobuf.UnsafeByteOperations
 import com.google.protobuf.kotlin.toByteString
+import org.bouncycastle.crypto.InvalidCipherTextException
+import org.bouncycastle.crypto.engines.AESEngine
+import org.bouncycastle.crypto.modes.GCMBlockCipher
+import org.bouncycastle.crypto.params.AEADParameters
+import org.bouncycastle.crypto.params.KeyParameter
 import org.xmtp.proto.message.contents.CiphertextOuterClass
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.security.DigestInputStream
 import java.security.GeneralSecurityException
+import java.security.MessageDigest
 import java.security.SecureRandom
 import javax.crypto.Cipher
 import javax.crypto.spec.GCMParameterSpec
@@ -12,29 +23,56 @@ import javax.crypto.spec.SecretKeySpec
 
 typealias CipherText = CiphertextOuterClass.Ciphertext
 
+/**
+ * Everything besides the payload itself that describes a payload written by [Crypto.encryptStream].
+ *
+ * @param payloadSha256 SHA-256 of the encrypted payload, as used for remote attachment digests.
+ */
+class StreamCiphertext(
+    val salt: ByteArray,
+    val nonce: ByteArray,
+    val payloadSha256: ByteArray,
+    val payloadLength: Long,
+)
+
 class Crypto {
     companion object {
         private const val TAG = "Crypto"
+        private const val STREAM_BUFFER_SIZE = 64 * 1024
+
+        // Cipher.getInstance looks the provider up every time; a cipher is reinitialized with a
+        // fresh key and nonce for every message, so each thread can keep reusing one.
+        private val gcmCipher =
+            object : ThreadLocal<Cipher>() {
+                override fun initialValue(): Cipher = Cipher.getInstance("AES/GCM/NoPadding")
+            }
+
+        // SecureRandom is thread-safe. nextBytes never blocks once seeded, unlike generateSeed,
+        // which can wait on the system's entropy pool.
+        private val random = SecureRandom()
+
+        internal fun randomBytes(size: Int): ByteArray = ByteArray(size).also { random.nextBytes(it) }
 
         fun encrypt(
             secret: ByteArray,
             message: ByteArray,
             additionalData: ByteArray = byteArrayOf(),
+        ): CipherText? = encrypt(secret, ByteBuffer.wrap(message), additionalData)
+
+        /**
+         * Like [encrypt], reading the message from [message]'s remaining bytes, so a message held
+         * in a [com.google.protobuf.ByteString] can be passed with `asReadOnlyByteBuffer()`
+         * instead of being copied out first.
+         */
+        fun encrypt(
+            secret: ByteArray,
+            message: ByteBuffer,
+            additionalData: ByteArray = byteArrayOf(),
         ): CipherText? =
             try {
-                val salt = SecureRandom().generateSeed(32)
-                val nonceData = SecureRandom().generateSeed(12)
-                val cipher = Cipher.getInstance("AES/GCM/NoPadding")
-
-                val key = Hkdf.computeHkdf("HMACSHA256", secret, salt, null, 32)
-                val keySpec = SecretKeySpec(key, "AES")
-                val gcmSpec = GCMParameterSpec(128, nonceData)
-
-                cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpec)
-                if (additionalData.isNotEmpty()) {
-                    cipher.updateAAD(additionalData)
-                }
-                val final = cipher.doFinal(message)
+                val salt = randomBytes(32)
+                val nonceData = randomBytes(12)
+                val final = gcm(Cipher.ENCRYPT_MODE, secret, salt, nonceData, message, additionalData)
 
                 CiphertextOuterClass.Ciphertext
                     .newBuilder()
@@ -43,7 +81,8 @@ class Crypto {
                             aes256GcmHkdfSha256
                                 .toBuilder()
                                 .also {
-                                    it.payload = final.toByteString()
+                                    // Nothing else holds on to the array, so it needn't be copied.
+                                    it.payload = UnsafeByteOperations.unsafeWrap(final)
                                     it.hkdfSalt = salt.toByteString()
                                     it.gcmNonce = nonceData.toByteString()
                                 }.build()
@@ -57,25 +96,229 @@ class Crypto {
             secret: ByteArray,
             ciphertext: CipherText,
             additionalData: ByteArray = byteArrayOf(),
+        ): ByteArray? =
+            decrypt(
+                secret,
+                ciphertext.aes256GcmHkdfSha256.hkdfSalt.toByteArray(),
+                ciphertext.aes256GcmHkdfSha256.gcmNonce.toByteArray(),
+                ciphertext.aes256GcmHkdfSha256.payload.asReadOnlyByteBuffer(),
+                additionalData,
+            )
+
+        /**
+         * Like [decrypt], for an `Aes256gcmHkdfsha256` payload in [payload]'s remaining bytes.
+         */
+        fun decrypt(
+            secret: ByteArray,
+            salt: ByteArray,
+            nonce: ByteArray,
+            payload: ByteBuffer,
+            additionalData: ByteArray = byteArrayOf(),
         ): ByteArray? =
             try {
-                val salt = ciphertext.aes256GcmHkdfSha256.hkdfSalt.toByteArray()
-                val nonceData = ciphertext.aes256GcmHkdfSha256.gcmNonce.toByteArray()
-                val payload = ciphertext.aes256GcmHkdfSha256.payload.toByteArray()
-                val cipher = Cipher.getInstance("AES/GCM/NoPadding")
-
-                val key = Hkdf.computeHkdf("HMACSHA256", secret, salt, null, 32)
-                val keySpec = SecretKeySpec(key, "AES")
-                val gcmSpec = GCMParameterSpec(128, nonceData)
-
-                cipher.init(Cipher.DECRYPT_MODE, keySpec, gcmSpec)
-                if (additionalData.isNotEmpty()) {
-                    cipher.updateAAD(additionalData)
-                }
-                cipher.doFinal(payload)
+                gcm(Cipher.DECRYPT_MODE, secret, salt, nonce, payload, additionalData)
             } catch (err: GeneralSecurityException) {
                 Log.e(TAG, err.message.toString())
                 null
             }
+
+        private fun gcm(
+            mode: Int,
+            secret: ByteArray,
+            salt: ByteArray,
+            nonce: ByteArray,
+            input: ByteBuffer,
+            additionalData: ByteArray,
+        ): ByteArray {
+            val key = Hkdf.computeHkdf("HMACSHA256", secret, salt, null, 32)
+            val cipher = gcmCipher.get()!!
+            cipher.init(mode, SecretKeySpec(key, "AES"), GCMParameterSpec(128, nonce))
+            if (additionalData.isNotEmpty()) {
+                cipher.updateAAD(additionalData)
+            }
+            val output = ByteArray(cipher.getOutputSize(input.remaining()))
+            val count = cipher.doFinal(input, ByteBuffer.wrap(output))
+            return if (count == output.size) output else output.copyOf(count)
+        }
+
+        /**
+         * Streaming counterpart of [encrypt]: reads [input] to the end and writes the encrypted
+         * payload to [output] one buffer at a time, hashing it on the way, so memory use does not
+         * grow with the size of the payload. The payload has the same `Aes256gcmHkdfsha256` layout
+         * as the one [encrypt] produces. Neither stream is closed.
+         */
+        fun encryptStream(
+            secret: ByteArray,
+            input: InputStream,
+            output: OutputStream,
+            additionalData: ByteArray = byteArrayOf(),
+        ): StreamCiphertext {
+            val salt = randomBytes(32)
+            val nonceData = randomBytes(12)
+            val cipher = streamCipher(true, secret, salt, nonceData, additionalData)
+            val digest = MessageDigest.getInstance("SHA-256")
+            val length =
+                process(cipher, input) { bytes, count ->
+                    output.write(bytes, 0, count)
+                    digest.update(bytes, 0, count)
+                }
+            return StreamCiphertext(salt, nonceData, digest.digest(), length)
+        }
+
+        /**
+         * Streaming counterpart of [decrypt] for a payload read from [input]; the plaintext is
+         * written to [output] as it is decrypted. Neither stream is closed.
+         *
+         * GCM only authenticates the payload at its end, so plaintext is written before it is
+         * known to be genuine: if this throws, discard whatever reached [output].
+         *
+         * @return SHA-256 of the encrypted payload read from [input].
+         * @throws XMTPException if the payload fails authentication.
+         */
+        fun decryptStream(
+            secret: ByteArray,
+            salt: ByteArray,
+            nonce: ByteArray,
+            input: InputStream,
+            output: OutputStream,
+            additionalData: ByteArray = byteArrayOf(),
+        ): ByteArray {
+            val decrypting = decryptingStream(secret, salt, nonce, input, additionalData)
+            decrypting.copyTo(output, STREAM_BUFFER_SIZE)
+            return decrypting.digest
+        }
+
+        /**
+         * Pull-based counterpart of [decryptStream], for handing the plaintext straight to a
+         * parser. Closing the returned stream closes [input].
+         *
+         * The same caveat applies: plaintext is returned before the payload is authenticated, and
+         * reading the last of it throws [XMTPException] if authentication fails.
+         */
+        fun decryptingStream(
+            secret: ByteArray,
+            salt: ByteArray,
+            nonce: ByteArray,
+            input: InputStream,
+            additionalData: ByteArray = byteArrayOf(),
+        ): DecryptingInputStream =
+            DecryptingInputStream(streamCipher(false, secret, salt, nonce, additionalData), input, STREAM_BUFFER_SIZE)
+
+        // The JCE AES/GCM ciphers, Conscrypt's included, hold back all plaintext until doFinal when
+        // decrypting, which defeats streaming; Bouncy Castle's GCM releases it as it goes.
+        private fun streamCipher(
+            forEncryption: Boolean,
+            secret: ByteArray,
+            salt: ByteArray,
+            nonce: ByteArray,
+            additionalData: ByteArray,
+        ): GCMBlockCipher {
+            val key = Hkdf.computeHkdf("HMACSHA256", secret, salt, null, 32)
+            return GCMBlockCipher(AESEngine()).apply {
+                init(forEncryption, AEADParameters(KeyParameter(key), 128, nonce, additionalData))
+            }
+        }
+
+        private inline fun process(
+            cipher: GCMBlockCipher,
+            input: InputStream,
+            write: (ByteArray, Int) -> Unit,
+        ): Long {
+            val buffer = ByteArray(STREAM_BUFFER_SIZE)
+            var out = ByteArray(cipher.getUpdateOutputSize(STREAM_BUFFER_SIZE))
+            var written = 0L
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                val needed = cipher.getUpdateOutputSize(read)
+                if (out.size < needed) out = ByteArray(needed)
+                val count = cipher.processBytes(buffer, 0, read, out, 0)
+                if (count > 0) {
+                    write(out, count)
+                    written += count
+                }
+            }
+            val needed = cipher.getOutputSize(0)
+            if (out.size < needed) out = ByteArray(needed)
+            val count = cipher.doFinal(out, 0)
+            if (count > 0) {
+                write(out, count)
+                written += count
+            }
+            return written
+        }
+    }
+}
+
+/**
+ * Plaintext of a payload read from another stream, as returned by [Crypto.decryptingStream].
+ */
+class DecryptingInputStream internal constructor(
+    private val cipher: GCMBlockCipher,
+    input: InputStream,
+    bufferSize: Int,
+) : InputStream() {
+    private val sha256 = MessageDigest.getInstance("SHA-256")
+    private val input = DigestInputStream(input, sha256)
+    private val buffer = ByteArray(bufferSize)
+    private var out = ByteArray(cipher.getUpdateOutputSize(bufferSize))
+    private var position = 0
+    private var limit = 0
+    private var payloadDigest: ByteArray? = null
+
+    /**
+     * SHA-256 of the encrypted payload, once the plaintext has been read to the end.
+     */
+    val digest: ByteArray
+        get() = checkNotNull(payloadDigest) { "The payload has not been read to the end" }.copyOf()
+
+    override fun read(): Int = if (fill()) out[position++].toInt() and 0xff else -1
+
+    override fun read(
+        b: ByteArray,
+        off: Int,
+        len: Int,
+    ): Int {
+        if (len == 0) return 0
+        if (!fill()) return -1
+        val count = minOf(len, limit - position)
+        System.arraycopy(out, position, b, off, count)
+        position += count
+        return count
+    }
+
+    override fun available(): Int = limit - position
+
+    override fun close() {
+        input.close()
+    }
+
+    // Decrypts until there is plaintext to hand out. Returns false at the end of the payload.
+    private fun fill(): Boolean {
+        while (position == limit) {
+            if (payloadDigest != null) return false
+            position = 0
+            val read = input.read(buffer)
+            limit =
+                if (read < 0) {
+                    ensureOutput(cipher.getOutputSize(0))
+                    val count =
+                        try {
+                            cipher.doFinal(out, 0)
+                        } catch (err: InvalidCipherTextException) {
+                            throw XMTPException("payload failed authentication", err)
+                        }
+                    payloadDigest = sha256.digest()
+                    count
+                } else {
+                    ensureOutput(cipher.getUpdateOutputSize(read))
+                    cipher.processBytes(buffer, 0, read, out, 0)
+                }
+        }
+        return true
+    }
+
+    private fun ensureOutput(size: Int) {
+        if (out.size < size) out = ByteArray(size)
     }
 }
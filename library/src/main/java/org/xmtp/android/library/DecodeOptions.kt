@@ -0,0 +1,77 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+
+/**
+ * Controls how a page of messages returned by `messages()`, `messagesWithReactions()` and
+ * `enrichedMessages()` is decoded.
+ *
+ * By default a page is decoded sequentially on the calling thread and message content is decoded
+ * lazily on first access. When [parallelism] is greater than 1, pages of at least
+ * [parallelThreshold] messages are split into chunks that are decoded concurrently on a dispatcher
+ * limited to [parallelism] threads, and each message's content is decoded up front on those
+ * threads. The returned list always keeps the order of the page.
+ *
+ * Parallel decoding pays off when every message of a large page is going to be read, such as
+ * history export or search indexing. For UI paging the sequential default is usually cheaper.
+ *
+ * @param parallelism Maximum number of threads used to decode a single page.
+ * @param parallelThreshold Pages smaller than this are always decoded sequentially.
+ * @param minChunkSize Lower bound for the number of messages decoded per task.
+ */
+data class DecodeOptions(
+    val parallelism: Int = 1,
+    val parallelThreshold: Int = DEFAULT_PARALLEL_THRESHOLD,
+    val minChunkSize: Int = DEFAULT_MIN_CHUNK_SIZE,
+) {
+    init {
+        require(parallelism > 0) { "parallelism must be greater than 0" }
+        require(parallelThreshold > 0) { "parallelThreshold must be greater than 0" }
+        require(minChunkSize > 0) { "minChunkSize must be greater than 0" }
+    }
+
+    val isParallel: Boolean
+        get() = parallelism > 1
+
+    companion object {
+        const val DEFAULT_PARALLEL_THRESHOLD = 200
+        const val DEFAULT_MIN_CHUNK_SIZE = 32
+
+        /**
+         * Parallel decoding with one thread per available processor.
+         */
+        fun parallel(parallelism: Int = Runtime.getRuntime().availableProcessors()): DecodeOptions =
+            DecodeOptions(parallelism = parallelism.coerceAtLeast(1))
+    }
+}
+
+/**
+ * Decodes this page with [decode], dropping messages it returns null for.
+ *
+ * When [options] calls for a parallel decode, [preload] is invoked on every decoded message on
+ * the worker thread so lazily decoded content is materialized there rather than by the caller.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+internal suspend fun <T, R : Any> List<T>.decodePage(
+    options: DecodeOptions,
+    preload: (R) -> Unit = {},
+    decode: (T) -> R?,
+): List<R> {
+    if (!options.isParallel || size < options.parallelThreshold) return mapNotNull(decode)
+
+    val chunkSize = maxOf(options.minChunkSize, (size + options.parallelism - 1) / options.parallelism)
+    val dispatcher = Dispatchers.Default.limitedParallelism(options.parallelism)
+    return coroutineScope {
+        chunked(chunkSize)
+            .map { chunk ->
+                async(dispatcher) {
+                    chunk.mapNotNull { decode(it)?.also(preload) }
+                }
+            }.awaitAll()
+            .flatten()
+    }
+}
@@ -0,0 +1,112 @@
+package org.xmtp.android.library
+
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import uniffi.xmtpv3.FfiDeliveryStatus
+import uniffi.xmtpv3.FfiMessage
+
+/**
+ * Least-recently-used cache of decoded messages, keyed by message ID and delivery status so a
+ * message is decoded again once it gets published or fails.
+ *
+ * The cache is bounded by an estimate of the memory its entries hold rather than by count, since
+ * a single attachment can outweigh thousands of text messages.
+ *
+ * @param maxSizeBytes Upper bound for the estimated size of all cached messages.
+ */
+class DecodedMessageCache(
+    val maxSizeBytes: Long = DEFAULT_MAX_SIZE_BYTES,
+) {
+    private data class Key(
+        val id: MessageId,
+        val deliveryStatus: FfiDeliveryStatus,
+    )
+
+    private class Entry(
+        val message: DecodedMessage,
+        val sizeBytes: Int,
+    )
+
+    private val entries = LinkedHashMap<Key, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true)
+    private var currentSizeBytes = 0L
+    private var hits = 0L
+    private var misses = 0L
+
+    val size: Int
+        get() = synchronized(this) { entries.size }
+
+    val sizeBytes: Long
+        get() = synchronized(this) { currentSizeBytes }
+
+    val hitCount: Long
+        get() = synchronized(this) { hits }
+
+    val missCount: Long
+        get() = synchronized(this) { misses }
+
+    /**
+     * Returns the cached decoding of [message], decoding and caching it on a miss.
+     * Returns null if the message cannot be decoded.
+     */
+    fun decode(message: FfiMessage): DecodedMessage? {
+        val key = Key(MessageId(message.id), message.deliveryStatus)
+        synchronized(this) {
+            val entry = entries[key]
+            if (entry != null) {
+                hits++
+                return entry.message
+            }
+            misses++
+        }
+        // Decode outside the lock; two threads missing on the same message both decode it.
+        val decoded = DecodedMessage.create(message) ?: return null
+        put(key, Entry(decoded, estimateSizeBytes(message)))
+        return decoded
+    }
+
+    /**
+     * Drops every cached version of the message with the given hex-encoded ID.
+     */
+    fun invalidate(messageId: String) {
+        val id = MessageId.fromHex(messageId)
+        synchronized(this) {
+            FfiDeliveryStatus.entries.forEach { status ->
+                entries.remove(Key(id, status))?.let { currentSizeBytes -= it.sizeBytes }
+            }
+        }
+    }
+
+    fun clear() {
+        synchronized(this) {
+            entries.clear()
+            currentSizeBytes = 0
+        }
+    }
+
+    private fun put(
+        key: Key,
+        entry: Entry,
+    ) {
+        if (entry.sizeBytes > maxSizeBytes) return
+        synchronized(this) {
+            entries.put(key, entry)?.let { currentSizeBytes -= it.sizeBytes }
+            currentSizeBytes += entry.sizeBytes
+            val iterator = entries.values.iterator()
+            while (currentSizeBytes > maxSizeBytes && iterator.hasNext()) {
+                currentSizeBytes -= iterator.next().sizeBytes
+                iterator.remove()
+            }
+        }
+    }
+
+    private fun estimateSizeBytes(message: FfiMessage): Int =
+        // The decoded content roughly mirrors the encoded bytes; the rest is object overhead.
+        ENTRY_OVERHEAD_BYTES + message.content.size * 2 + message.id.size + message.conversationId.size +
+            message.senderInboxId.length * 2
+
+    companion object {
+        const val DEFAULT_MAX_SIZE_BYTES = 8L * 1024 * 1024
+        private const val ENTRY_OVERHEAD_BYTES = 256
+        private const val INITIAL_CAPACITY = 256
+        private const val LOAD_FACTOR = 0.75f
+    }
+}
@@ -7,9 +7,7 @@ import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
 import kotlinx.coroutines.withContext
-import org.xmtp.android.library.codecs.ContentCodec
 import org.xmtp.android.library.codecs.EncodedContent
-import org.xmtp.android.library.codecs.compress
 import org.xmtp.android.library.libxmtp.ConversationDebugInfo
 import org.xmtp.android.library.libxmtp.ConversationDebugInfo.CommitLogForkStatus
 import org.xmtp.android.library.libxmtp.DecodedMessage
@@ -39,17 +37,17 @@ class Dm(
     private val ffiLastMessage: FfiMessage? = null,
     private val ffiIsCommitLogForked: Boolean? = null,
 ) {
+    val typedConversationId: ConversationId by lazy { ConversationId(libXMTPGroup.id()) }
+
     val id: String
-        get() = libXMTPGroup.id().toHex()
+        get() = typedConversationId.hex
 
-    val topic: String
-        get() = Topic.groupMessage(id).description
+    val topic: String by lazy { Topic.groupMessage(id).description }
 
-    val createdAt: Date
-        get() = Date(libXMTPGroup.createdAtNs() / 1_000_000)
+    val createdAtNs: Long by lazy { libXMTPGroup.createdAtNs() }
 
-    val createdAtNs: Long
-        get() = libXMTPGroup.createdAtNs()
+    val createdAt: Date
+        get() = Date(createdAtNs / 1_000_000)
 
     val lastActivityNs: Long
         get() = ffiLastMessage?.sentAtNs ?: createdAtNs
@@ -125,31 +123,7 @@ class Dm(
     fun <T> encodeContent(
         content: T,
         options: SendOptions?,
-    ): Pair<EncodedContent, MessageVisibilityOptions> {
-        val codec = Client.codecRegistry.find(options?.contentType)
-
-        fun <Codec : ContentCodec<T>> encode(
-            codec: Codec,
-            content: T,
-        ): EncodedContent = codec.encode(content)
-        try {
-            @Suppress("UNCHECKED_CAST")
-            val typedCodec = codec as ContentCodec<T>
-            var encoded = encode(typedCodec, content)
-            val fallback = codec.fallback(content)
-            if (!fallback.isNullOrBlank()) {
-                encoded = encoded.toBuilder().also { it.fallback = fallback }.build()
-            }
-            val compression = options?.compression
-            if (compression != null) {
-                encoded = encoded.compress(compression)
-            }
-            val sendOpts = MessageVisibilityOptions(shouldPush = typedCodec.shouldPush(content))
-            return Pair(encoded, sendOpts)
-        } catch (e: Exception) {
-            throw XMTPException("Codec type is not registered")
-        }
-    }
+    ): Pair<EncodedContent, MessageVisibilityOptions> = Client.codecRegistry.encodeContent(content, options)
 
     /**
      * Prepares a message for sending.
@@ -209,7 +183,9 @@ class Dm(
     suspend fun deleteMessage(messageId: String): String =
         withContext(Dispatchers.IO) {
             try {
-                libXMTPGroup.deleteMessage(messageId.hexToByteArray()).toHex()
+                libXMTPGroup.deleteMessage(messageId.hexToByteArray()).toHex().also {
+                    client.decodedMessageCache.invalidate(messageId)
+                }
             } catch (e: Exception) {
                 throw XMTPException("Unable to delete message: ${e.message}", e)
             }
@@ -220,7 +196,7 @@ class Dm(
     suspend fun lastMessage(): DecodedMessage? =
         withContext(Dispatchers.IO) {
             if (ffiLastMessage != null) {
-                DecodedMessage.create(ffiLastMessage)
+                client.decodedMessageCache.decode(ffiLastMessage)
             } else {
                 messages(limit = 1).firstOrNull()
             }
@@ -256,6 +232,7 @@ class Dm(
         insertedAfterNs: Long? = null,
         insertedBeforeNs: Long? = null,
         sortBy: SortBy = SortBy.SENT_TIME,
+        decodeOptions: DecodeOptions = DecodeOptions(),
     ): List<DecodedMessage> =
         withContext(Dispatchers.IO) {
             libXMTPGroup
@@ -296,7 +273,9 @@ class Dm(
                                     SortBy.INSERTED_TIME -> FfiSortBy.INSERTED_AT
                                 },
                         ),
-                ).mapNotNull { DecodedMessage.create(it) }
+                ).decodePage(decodeOptions, preload = { it.content<Any>() }) {
+                    client.decodedMessageCache.decode(it)
+                }
         }
 
     suspend fun countMessages(
@@ -339,6 +318,30 @@ class Dm(
             )
         }
 
+    /**
+     * Create a [MessagePager] that walks this conversation's history one page at a time.
+     *
+     * @see Conversation.messagePager
+     */
+    fun messagePager(
+        pageSize: Int = 50,
+        prefetchDistance: Int = 1,
+        direction: SortDirection = SortDirection.DESCENDING,
+        deliveryStatus: MessageDeliveryStatus = MessageDeliveryStatus.ALL,
+        excludeContentTypes: List<FfiContentType>? = null,
+        excludeSenderInboxIds: List<String>? = null,
+        sortBy: SortBy = SortBy.SENT_TIME,
+    ): MessagePager =
+        Conversation.Dm(this).messagePager(
+            pageSize = pageSize,
+            prefetchDistance = prefetchDistance,
+            direction = direction,
+            deliveryStatus = deliveryStatus,
+            excludedContentTypes = excludeContentTypes,
+            excludeSenderInboxIds = excludeSenderInboxIds,
+            sortBy = sortBy,
+        )
+
     suspend fun messagesWithReactions(
         limit: Int? = null,
         beforeNs: Long? = null,
@@ -350,6 +353,7 @@ class Dm(
         insertedAfterNs: Long? = null,
         insertedBeforeNs: Long? = null,
         sortBy: SortBy = SortBy.SENT_TIME,
+        decodeOptions: DecodeOptions = DecodeOptions(),
     ): List<DecodedMessage> =
         withContext(Dispatchers.IO) {
             val ffiMessageWithReactions =
@@ -392,8 +396,8 @@ class Dm(
                         ),
                 )
 
-            ffiMessageWithReactions.mapNotNull { ffiMessageWithReaction ->
-                DecodedMessage.create(ffiMessageWithReaction)
+            ffiMessageWithReactions.decodePage(decodeOptions, preload = { it.content<Any>() }) {
+                DecodedMessage.create(it)
             }
         }
 
@@ -424,6 +428,7 @@ class Dm(
         insertedAfterNs: Long? = null,
         insertedBeforeNs: Long? = null,
         sortBy: SortBy = SortBy.SENT_TIME,
+        decodeOptions: DecodeOptions = DecodeOptions(),
     ): List<DecodedMessageV2> =
         withContext(Dispatchers.IO) {
             libXMTPGroup
@@ -464,14 +469,14 @@ class Dm(
                                     SortBy.INSERTED_TIME -> FfiSortBy.INSERTED_AT
                                 },
                         ),
-                ).mapNotNull { DecodedMessageV2.create(it) }
+                ).decodePage(decodeOptions, preload = { it.content<Any>() }) { DecodedMessageV2.create(it) }
         }
 
     suspend fun processMessage(messageBytes: ByteArray): DecodedMessage? =
         withContext(Dispatchers.IO) {
             val messages = libXMTPGroup.processStreamedConversationMessage(messageBytes)
             // TODO: Handle multiple messages with d14n
-            messages.firstOrNull()?.let { DecodedMessage.create(it) }
+            messages.firstOrNull()?.let { client.decodedMessageCache.decode(it) }
         }
 
     suspend fun creatorInboxId(): InboxId = withContext(Dispatchers.IO) { metadata().creatorInboxId() }
@@ -482,16 +487,61 @@ class Dm(
 
     suspend fun members(): List<Member> = withContext(Dispatchers.IO) { libXMTPGroup.listMembers().map { Member(it) } }
 
-    fun streamMessages(onClose: (() -> Unit)? = null): Flow<DecodedMessage> =
+    /**
+     * Streams this conversation's messages over the client's shared [StreamHub] subscription
+     * instead of opening a dedicated stream.
+     */
+    fun streamSharedMessages(): Flow<DecodedMessage> = client.streamHub.messages(id)
+
+    /**
+     * Like [streamMessages], but reconnects with exponential backoff when the stream closes and
+     * replays the messages that arrived while it was down before resuming live delivery.
+     *
+     * @param startWatermarkNs Replay every message inserted after this timestamp before streaming.
+     */
+    fun streamMessagesResilient(
+        retryOptions: StreamRetryOptions = StreamRetryOptions(),
+        startWatermarkNs: Long? = null,
+    ): Flow<DecodedMessage> =
+        resilientMessageStream(
+            tag = "XMTP Dm stream",
+            options = retryOptions,
+            startWatermarkNs = startWatermarkNs,
+            live = { onReady -> streamMessages(onClose = null, options = StreamOptions(), onReady = onReady) },
+            backfill = { insertedAfterNs ->
+                sync()
+                messages(
+                    insertedAfterNs = insertedAfterNs,
+                    direction = SortDirection.ASCENDING,
+                    sortBy = SortBy.INSERTED_TIME,
+                )
+            },
+        )
+
+    fun streamMessages(
+        onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
+    ): Flow<DecodedMessage> = streamMessages(onClose, options, onReady = null)
+
+    /**
+     * [streamMessages] that calls [onReady] once the subscription is live.
+     */
+    internal fun streamMessages(
+        onClose: (() -> Unit)?,
+        options: StreamOptions,
+        onReady: (() -> Unit)?,
+    ): Flow<DecodedMessage> =
         callbackFlow {
+            val sink = StreamSink<DecodedMessage>(this, options) { it.typedConversationId }
             val messageCallback =
                 object : FfiMessageCallback {
                     override fun onMessage(message: FfiMessage) {
                         try {
-                            val decodedMessage = DecodedMessage.create(message)
+                            val decodedMessage = client.decodedMessageCache.decode(message)
                             if (decodedMessage != null) {
-                                trySend(decodedMessage)
+                                sink.send(decodedMessage)
                             } else {
+                                sink.decodeFailed()
                                 Log.w(
                                     "XMTP Dm stream",
                                     "Failed to decode message: id=${message.id.toHex()}, " +
@@ -500,6 +550,7 @@ class Dm(
                                 )
                             }
                         } catch (e: Exception) {
+                            sink.decodeFailed()
                             Log.e(
                                 "XMTP Dm stream",
                                 "Error decoding message: id=${message.id.toHex()}, " +
@@ -521,8 +572,15 @@ class Dm(
                 }
 
             val stream = libXMTPGroup.stream(messageCallback)
-            awaitClose { stream.end() }
-        }
+            if (onReady != null) {
+                stream.waitForReady()
+                onReady()
+            }
+            awaitClose {
+                sink.close()
+                stream.end()
+            }
+        }.withStreamOptions(options)
 
     suspend fun clearDisappearingMessageSettings() =
         withContext(Dispatchers.IO) {
@@ -613,8 +671,8 @@ class Dm(
 
         other as Dm
 
-        return id == other.id
+        return typedConversationId == other.typedConversationId
     }
 
-    override fun hashCode(): Int = id.hashCode()
+    override fun hashCode(): Int = typedConversationId.hashCode()
 }
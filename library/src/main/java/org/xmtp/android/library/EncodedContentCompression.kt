@@ -2,9 +2,11 @@ package org.xmtp.android.library
 
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.InputStream
 import java.util.zip.DeflaterOutputStream
 import java.util.zip.GZIPInputStream
 import java.util.zip.GZIPOutputStream
+import java.util.zip.InflaterInputStream
 import java.util.zip.InflaterOutputStream
 
 enum class EncodedContentCompression {
@@ -56,4 +58,13 @@ enum class EncodedContentCompression {
                 }
             }
         }
+
+    /**
+     * Streaming counterpart of [decompress]: the decompressed bytes of [input].
+     */
+    fun decompressing(input: InputStream): InputStream =
+        when (this) {
+            DEFLATE -> InflaterInputStream(input)
+            GZIP -> GZIPInputStream(input)
+        }
 }
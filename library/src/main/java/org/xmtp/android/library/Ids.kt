@@ -0,0 +1,64 @@
+package org.xmtp.android.library
+
+/**
+ * An ID that libxmtp hands out as raw bytes and the SDK exposes as lowercase hex.
+ *
+ * The bytes are kept as they are and the hex form is only built the first time it is asked for,
+ * so IDs can be compared, hashed and used as map keys without encoding them. Two IDs are equal
+ * when they are of the same type and hold the same bytes.
+ */
+sealed class ByteId(
+    private val bytes: ByteArray,
+) {
+    private val hash = bytes.contentHashCode()
+
+    /** Lowercase hex form of the ID, the form the rest of the SDK takes and returns IDs in. */
+    val hex: String by lazy(LazyThreadSafetyMode.PUBLICATION) { bytes.toHex() }
+
+    val size: Int
+        get() = bytes.size
+
+    /** A copy of the raw ID bytes. */
+    fun toByteArray(): ByteArray = bytes.copyOf()
+
+    internal fun contentEquals(other: ByteArray): Boolean = bytes.contentEquals(other)
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other == null || other.javaClass != javaClass) return false
+        other as ByteId
+        return hash == other.hash && bytes.contentEquals(other.bytes)
+    }
+
+    override fun hashCode(): Int = hash
+
+    override fun toString(): String = hex
+}
+
+/**
+ * ID of a group or DM.
+ */
+class ConversationId internal constructor(
+    bytes: ByteArray,
+) : ByteId(bytes) {
+    companion object {
+        /** Wraps a copy of [bytes]. */
+        fun of(bytes: ByteArray): ConversationId = ConversationId(bytes.copyOf())
+
+        fun fromHex(hex: String): ConversationId = ConversationId(hex.hexToByteArray())
+    }
+}
+
+/**
+ * ID of a message.
+ */
+class MessageId internal constructor(
+    bytes: ByteArray,
+) : ByteId(bytes) {
+    companion object {
+        /** Wraps a copy of [bytes]. */
+        fun of(bytes: ByteArray): MessageId = MessageId(bytes.copyOf())
+
+        fun fromHex(hex: String): MessageId = MessageId(hex.hexToByteArray())
+    }
+}
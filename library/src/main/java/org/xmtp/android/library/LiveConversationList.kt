@@ -0,0 +1,268 @@
+package org.xmtp.android.library
+
+import android.util.Log
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.xmtp.android.library.Conversations.ConversationFilterType
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import org.xmtp.android.library.libxmtp.DecodedMessageV2
+
+/**
+ * A fine-grained change to a [LiveConversationList]. Indexes refer to the list as it was
+ * right before the event (for [Removed] and the `fromIndex` of [Moved]) or right after it.
+ */
+sealed class ConversationListEvent {
+    data class Reloaded(
+        val items: List<LiveConversationList.Item>,
+    ) : ConversationListEvent()
+
+    data class Inserted(
+        val index: Int,
+        val item: LiveConversationList.Item,
+    ) : ConversationListEvent()
+
+    data class Moved(
+        val fromIndex: Int,
+        val toIndex: Int,
+        val item: LiveConversationList.Item,
+    ) : ConversationListEvent()
+
+    data class Updated(
+        val index: Int,
+        val item: LiveConversationList.Item,
+    ) : ConversationListEvent()
+
+    data class Removed(
+        val index: Int,
+        val conversationId: String,
+    ) : ConversationListEvent()
+}
+
+/**
+ * A conversation list that is loaded once and then kept up to date from the conversation,
+ * message, consent and deletion streams, so callers never have to call [Conversations.list]
+ * again after every event.
+ *
+ * Items are ordered by most recent activity. Each change is published on [events] as an
+ * insert, move, update or remove with the affected index, which maps directly onto
+ * RecyclerView/DiffUtil style adapters.
+ *
+ * @param consentStates Only keep conversations in one of these consent states, or all when null.
+ */
+class LiveConversationList(
+    private val client: Client,
+    private val type: ConversationFilterType = ConversationFilterType.ALL,
+    private val consentStates: List<ConsentState>? = null,
+) {
+    data class Item(
+        val conversation: Conversation,
+        val id: String,
+        val lastActivityNs: Long,
+        val lastMessage: DecodedMessage?,
+    )
+
+    private val lock = Mutex()
+
+    // Sorted by lastActivityNs descending, then id. Positions are found by binary search, but an
+    // insert, move or remove still shifts the items after it, so updates are O(n). A tree would
+    // make updates O(log n) only by making the positional indexes in events O(n) to compute.
+    private val items = ArrayList<Item>()
+    private val itemsById = HashMap<String, Item>()
+
+    private val _events = MutableSharedFlow<ConversationListEvent>(extraBufferCapacity = EVENT_BUFFER_CAPACITY)
+    val events: SharedFlow<ConversationListEvent> = _events.asSharedFlow()
+
+    /**
+     * Loads the list and starts following the streams in [scope].
+     * Cancel the returned job to stop updating the list.
+     */
+    fun start(scope: CoroutineScope): Job =
+        scope.launch(Dispatchers.IO) {
+            // Hold the lock until the initial load completes so stream events that arrive
+            // meanwhile are applied on top of it rather than being overwritten.
+            lock.lock()
+            try {
+                launch {
+                    client.conversations
+                        .stream(type)
+                        .catch { Log.e(TAG, "Conversation stream failed", it) }
+                        .collect { onConversation(it) }
+                }
+                launch {
+                    client.conversations
+                        .streamAllMessages(type, consentStates)
+                        .catch { Log.e(TAG, "Message stream failed", it) }
+                        .collect { onMessage(it) }
+                }
+                launch {
+                    client.preferences
+                        .streamConsent()
+                        .catch { Log.e(TAG, "Consent stream failed", it) }
+                        .collect { onConsent(it) }
+                }
+                launch {
+                    client.conversations
+                        .streamMessageDeletions()
+                        .catch { Log.e(TAG, "Deletion stream failed", it) }
+                        .collect { onMessageDeleted(it) }
+                }
+                reloadLocked()
+            } finally {
+                lock.unlock()
+            }
+        }
+
+    /**
+     * Re-lists all conversations and replaces the current contents.
+     */
+    suspend fun reload() = lock.withLock { reloadLocked() }
+
+    suspend fun snapshot(): List<Item> = lock.withLock { items.toList() }
+
+    suspend fun size(): Int = lock.withLock { items.size }
+
+    private suspend fun reloadLocked() {
+        val conversations =
+            when (type) {
+                ConversationFilterType.ALL -> client.conversations.list(consentStates = consentStates)
+                ConversationFilterType.GROUPS ->
+                    client.conversations
+                        .listGroups(consentStates = consentStates)
+                        .map { Conversation.Group(it) }
+                ConversationFilterType.DMS ->
+                    client.conversations
+                        .listDms(consentStates = consentStates)
+                        .map { Conversation.Dm(it) }
+            }
+        items.clear()
+        itemsById.clear()
+        conversations.forEach { conversation ->
+            val item =
+                Item(conversation, conversation.id, conversation.lastActivityNs, conversation.lastMessage())
+            items.add(item)
+            itemsById[item.id] = item
+        }
+        items.sortWith(ORDER)
+        _events.emit(ConversationListEvent.Reloaded(items.toList()))
+    }
+
+    private suspend fun onConversation(conversation: Conversation) =
+        lock.withLock {
+            val id = conversation.id
+            val existing = itemsById[id]
+            if (existing == null) {
+                if (consentStates != null && conversation.consentState() !in consentStates) return@withLock
+                insert(Item(conversation, id, conversation.lastActivityNs, null))
+            } else {
+                replace(existing, existing.copy(conversation = conversation))
+            }
+        }
+
+    private suspend fun onMessage(message: DecodedMessage) =
+        lock.withLock {
+            val existing = itemsById[message.conversationId]
+            if (existing == null) {
+                val conversation = client.conversations.findConversation(message.conversationId) ?: return@withLock
+                insert(Item(conversation, message.conversationId, message.sentAtNs, message))
+            } else {
+                replace(
+                    existing,
+                    existing.copy(
+                        lastActivityNs = maxOf(existing.lastActivityNs, message.sentAtNs),
+                        lastMessage = message,
+                    ),
+                )
+            }
+        }
+
+    private suspend fun onConsent(record: ConsentRecord) =
+        lock.withLock {
+            if (record.entryType != EntryType.CONVERSATION_ID) return@withLock
+            val existing = itemsById[record.value]
+            val included = consentStates == null || record.consentType in consentStates
+            // Items don't carry the consent state, so a change that keeps a conversation listed
+            // needs no update.
+            when {
+                existing != null && !included -> remove(existing)
+
+                existing == null && included -> {
+                    val conversation = client.conversations.findConversation(record.value) ?: return@withLock
+                    insert(Item(conversation, record.value, conversation.lastActivityNs, conversation.lastMessage()))
+                }
+
+                else -> Unit
+            }
+        }
+
+    private suspend fun onMessageDeleted(message: DecodedMessageV2) =
+        lock.withLock {
+            val existing = itemsById[message.conversationId] ?: return@withLock
+            if (existing.lastMessage?.id != message.id) return@withLock
+            val lastMessage = existing.conversation.messages(limit = 1).firstOrNull()
+            replace(existing, existing.copy(lastMessage = lastMessage))
+        }
+
+    private suspend fun insert(item: Item) {
+        val index = insertionIndex(item)
+        items.add(index, item)
+        itemsById[item.id] = item
+        _events.emit(ConversationListEvent.Inserted(index, item))
+    }
+
+    private suspend fun replace(
+        old: Item,
+        new: Item,
+    ) {
+        if (old == new) return
+        val fromIndex = indexOf(old)
+        itemsById[new.id] = new
+        if (old.lastActivityNs == new.lastActivityNs) {
+            items[fromIndex] = new
+            _events.emit(ConversationListEvent.Updated(fromIndex, new))
+            return
+        }
+        items.removeAt(fromIndex)
+        val toIndex = insertionIndex(new)
+        items.add(toIndex, new)
+        _events.emit(ConversationListEvent.Moved(fromIndex, toIndex, new))
+    }
+
+    private suspend fun remove(item: Item) {
+        val index = indexOf(item)
+        items.removeAt(index)
+        itemsById.remove(item.id)
+        _events.emit(ConversationListEvent.Removed(index, item.id))
+    }
+
+    private fun indexOf(item: Item): Int {
+        val index = insertionIndex(item)
+        check(index < items.size && items[index].id == item.id) { "Conversation ${item.id} is not indexed" }
+        return index
+    }
+
+    private fun insertionIndex(item: Item): Int {
+        var low = 0
+        var high = items.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (ORDER.compare(items[mid], item) < 0) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    companion object {
+        private const val TAG = "LiveConversationList"
+        private const val EVENT_BUFFER_CAPACITY = 256
+
+        private val ORDER =
+            compareByDescending<Item> { it.lastActivityNs }.thenBy { it.id }
+    }
+}
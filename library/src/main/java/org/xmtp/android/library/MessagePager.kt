@@ -0,0 +1,168 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.ClosedReceiveChannelException
+import kotlinx.coroutines.channels.ReceiveChannel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.produceIn
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import org.xmtp.android.library.libxmtp.DecodedMessage.MessageDeliveryStatus
+import org.xmtp.android.library.libxmtp.DecodedMessage.SortBy
+import org.xmtp.android.library.libxmtp.DecodedMessage.SortDirection
+import uniffi.xmtpv3.FfiContentType
+
+/**
+ * Position of a [MessagePager] in a conversation's history.
+ *
+ * @param timestampNs The sent or inserted timestamp (depending on the pager's [SortBy]) of the
+ *                    last message returned.
+ * @param messageIds IDs of the already returned messages that share [timestampNs], used as a
+ *                   tie-breaker so messages with identical timestamps are neither skipped nor repeated.
+ */
+data class MessageCursor(
+    val timestampNs: Long,
+    val messageIds: Set<String>,
+)
+
+/**
+ * A single page of messages returned by a [MessagePager].
+ *
+ * @param nextCursor The cursor to continue from, or null if this is the last page.
+ */
+data class MessagePage(
+    val messages: List<DecodedMessage>,
+    val nextCursor: MessageCursor?,
+) {
+    val hasMore: Boolean
+        get() = nextCursor != null
+}
+
+/**
+ * Keyset pager over the message history of a conversation.
+ *
+ * Each page is fetched with a bounded `limit` and a `sentBeforeNs`/`sentAfterNs` (or inserted
+ * time) bound derived from the previous page, so opening a long conversation never loads more
+ * than [pageSize] messages per FFI call. Up to [prefetchDistance] pages are fetched ahead in the
+ * background while the caller is rendering the current one.
+ *
+ * Use [loadNext] to pull pages one at a time or [pages] to collect them as a [Flow].
+ * Call [close] when the pager is no longer needed to cancel any in-flight prefetch.
+ */
+class MessagePager internal constructor(
+    private val conversation: Conversation,
+    val pageSize: Int,
+    val prefetchDistance: Int,
+    private val direction: SortDirection,
+    private val sortBy: SortBy,
+    private val deliveryStatus: MessageDeliveryStatus,
+    private val excludedContentTypes: List<FfiContentType>?,
+    private val excludeSenderInboxIds: List<String>?,
+) {
+    init {
+        require(pageSize > 0) { "pageSize must be greater than 0" }
+        require(prefetchDistance >= 0) { "prefetchDistance must not be negative" }
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val lock = Mutex()
+    private var prefetchedPages: ReceiveChannel<MessagePage>? = null
+
+    /**
+     * Returns the next page of messages, or null once the history has been exhausted.
+     * The following pages are prefetched in the background.
+     */
+    suspend fun loadNext(): MessagePage? =
+        lock.withLock {
+            val channel = prefetchedPages ?: pages().produceIn(scope).also { prefetchedPages = it }
+            try {
+                channel.receive()
+            } catch (e: ClosedReceiveChannelException) {
+                null
+            }
+        }
+
+    /**
+     * Emits every page of the history starting from [startAfter] (or the newest/oldest message
+     * depending on the sort direction). Each collection starts a new traversal.
+     */
+    fun pages(startAfter: MessageCursor? = null): Flow<MessagePage> =
+        flow {
+            var cursor = startAfter
+            do {
+                val page = fetchPage(cursor)
+                emit(page)
+                cursor = page.nextCursor
+            } while (cursor != null)
+        }.buffer(prefetchDistance).flowOn(Dispatchers.IO)
+
+    /**
+     * Fetches a single page following [cursor] without touching the pager's own position.
+     */
+    suspend fun fetchPage(cursor: MessageCursor?): MessagePage {
+        val seenIds = cursor?.messageIds.orEmpty()
+        val limit = pageSize + seenIds.size
+        // Bounds are widened by one so messages sharing the cursor timestamp are fetched again
+        // and filtered out by ID below.
+        val bound =
+            cursor?.let {
+                if (direction == SortDirection.DESCENDING) it.timestampNs + 1 else it.timestampNs - 1
+            }
+        val upperBound = bound.takeIf { direction == SortDirection.DESCENDING }
+        val lowerBound = bound.takeIf { direction == SortDirection.ASCENDING }
+
+        val fetched =
+            conversation.messages(
+                limit = limit,
+                beforeNs = upperBound.takeIf { sortBy == SortBy.SENT_TIME },
+                afterNs = lowerBound.takeIf { sortBy == SortBy.SENT_TIME },
+                direction = direction,
+                deliveryStatus = deliveryStatus,
+                excludedContentTypes = excludedContentTypes,
+                excludeSenderInboxIds = excludeSenderInboxIds,
+                insertedAfterNs = lowerBound.takeIf { sortBy == SortBy.INSERTED_TIME },
+                insertedBeforeNs = upperBound.takeIf { sortBy == SortBy.INSERTED_TIME },
+                sortBy = sortBy,
+            )
+
+        val messages = fetched.filterNot { it.id in seenIds }.take(pageSize)
+        val last = messages.lastOrNull()
+        if (last == null || fetched.size < limit) {
+            return MessagePage(messages, null)
+        }
+
+        val lastTimestamp = last.sortKey()
+        val idsAtLastTimestamp =
+            messages.filter { it.sortKey() == lastTimestamp }.mapTo(mutableSetOf()) { it.id }
+        if (cursor != null && cursor.timestampNs == lastTimestamp) {
+            idsAtLastTimestamp.addAll(seenIds)
+        }
+        return MessagePage(messages, MessageCursor(lastTimestamp, idsAtLastTimestamp))
+    }
+
+    /**
+     * Discards prefetched pages so the next [loadNext] starts again from the beginning.
+     */
+    suspend fun reset() =
+        lock.withLock {
+            prefetchedPages?.cancel()
+            prefetchedPages = null
+        }
+
+    fun close() {
+        scope.cancel()
+    }
+
+    private fun DecodedMessage.sortKey(): Long =
+        when (sortBy) {
+            SortBy.SENT_TIME -> sentAtNs
+            SortBy.INSERTED_TIME -> insertedAtNs
+        }
+}
@@ -0,0 +1,127 @@
+package org.xmtp.android.library
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+import org.xmtp.android.library.Conversations.ConversationFilterType
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import java.util.TreeMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs [handler] for every message streamed to [client], in parallel across conversations.
+ *
+ * Messages are partitioned by conversation ID over [workerCount] workers, so messages within a
+ * conversation are handled one at a time and in order, while a slow conversation only holds up
+ * the conversations that share its partition. Each partition buffers up to [queueCapacity]
+ * messages; once one is full, intake pauses until it drains.
+ *
+ * [checkpoint] publishes the highest `insertedAtNs` below which every message has been handled.
+ * Persist it and pass it back to [start] to resume after a restart without losing or (beyond the
+ * messages in flight at the time) repeating messages. The underlying stream reconnects and fills
+ * gaps on its own, see [Conversations.streamAllMessagesResilient].
+ *
+ * @param onError Called when [handler] throws. The message still counts as processed.
+ */
+class MessageProcessor(
+    private val client: Client,
+    val workerCount: Int = DEFAULT_WORKER_COUNT,
+    val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+    private val type: ConversationFilterType = ConversationFilterType.ALL,
+    private val consentStates: List<ConsentState>? = null,
+    private val retryOptions: StreamRetryOptions = StreamRetryOptions(),
+    private val onError: (DecodedMessage, Exception) -> Unit = { message, e ->
+        Log.e(TAG, "Failed to process message ${message.id}", e)
+    },
+    private val handler: suspend (DecodedMessage) -> Unit,
+) {
+    init {
+        require(workerCount > 0) { "workerCount must be greater than 0" }
+        require(queueCapacity > 0) { "queueCapacity must be greater than 0" }
+    }
+
+    // Inserted timestamps of messages received but not yet processed, with their multiplicity.
+    private val inFlight = TreeMap<Long, Int>()
+    private var highestProcessedNs: Long? = null
+    private val processed = AtomicLong()
+
+    private val _checkpoint = MutableStateFlow<Long?>(null)
+    val checkpoint: StateFlow<Long?> = _checkpoint.asStateFlow()
+
+    val processedCount: Long
+        get() = processed.get()
+
+    /**
+     * Starts streaming and processing messages in [scope]. Cancel the returned job to stop.
+     *
+     * @param startWatermarkNs A previously saved [checkpoint] to resume from.
+     */
+    fun start(
+        scope: CoroutineScope,
+        startWatermarkNs: Long? = null,
+    ): Job =
+        scope.launch(Dispatchers.IO) {
+            _checkpoint.value = startWatermarkNs
+            val partitions = List(workerCount) { Channel<DecodedMessage>(queueCapacity) }
+            partitions.forEach { partition ->
+                launch {
+                    for (message in partition) {
+                        process(message)
+                    }
+                }
+            }
+            client.conversations
+                .streamAllMessagesResilient(type, consentStates, retryOptions, startWatermarkNs)
+                .collect { message ->
+                    received(message.insertedAtNs)
+                    partitions[partitionOf(message.conversationId)].send(message)
+                }
+        }
+
+    private suspend fun process(message: DecodedMessage) {
+        try {
+            handler(message)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            onError(message, e)
+        }
+        processed.incrementAndGet()
+        acknowledged(message.insertedAtNs)
+    }
+
+    private fun partitionOf(conversationId: String): Int = Math.floorMod(conversationId.hashCode(), workerCount)
+
+    private fun received(insertedAtNs: Long) {
+        synchronized(inFlight) {
+            inFlight.merge(insertedAtNs, 1, Int::plus)
+        }
+    }
+
+    private fun acknowledged(insertedAtNs: Long) {
+        synchronized(inFlight) {
+            inFlight.computeIfPresent(insertedAtNs) { _, count -> if (count == 1) null else count - 1 }
+            val highestProcessed = maxOf(highestProcessedNs ?: insertedAtNs, insertedAtNs)
+            highestProcessedNs = highestProcessed
+            // Everything before the oldest unprocessed message is done.
+            val safeWatermark =
+                if (inFlight.isEmpty()) highestProcessed else minOf(inFlight.firstKey() - 1, highestProcessed)
+            if (safeWatermark > (_checkpoint.value ?: Long.MIN_VALUE)) {
+                _checkpoint.value = safeWatermark
+            }
+        }
+    }
+
+    companion object {
+        private const val TAG = "XMTP MessageProcessor"
+        const val DEFAULT_WORKER_COUNT = 4
+        const val DEFAULT_QUEUE_CAPACITY = 64
+    }
+}
@@ -0,0 +1,207 @@
+package org.xmtp.android.library
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.xmtp.android.library.libxmtp.DecodedMessage.MessageDeliveryStatus
+import kotlin.coroutines.coroutineContext
+import kotlin.math.min
+import kotlin.math.pow
+
+/**
+ * @param flushDelayMs How long a staged message may wait for others in the same conversation
+ *                     before they are published together.
+ * @param maxBatchSize Publish immediately once this many messages are waiting in a conversation.
+ * @param maxRetries How many times a failed message is republished before it is given up on.
+ * @param initialRetryDelayMs Delay before the first retry; doubles with every further attempt.
+ * @param maxRetryDelayMs Upper bound for the retry delay.
+ */
+data class OutboxOptions(
+    val flushDelayMs: Long = 50,
+    val maxBatchSize: Int = 20,
+    val maxRetries: Int = 5,
+    val initialRetryDelayMs: Long = 1_000,
+    val maxRetryDelayMs: Long = 30_000,
+) {
+    init {
+        require(flushDelayMs >= 0) { "flushDelayMs must not be negative" }
+        require(maxBatchSize > 0) { "maxBatchSize must be greater than 0" }
+        require(maxRetries >= 0) { "maxRetries must not be negative" }
+    }
+
+    internal fun retryDelayMs(attempt: Int): Long =
+        min(maxRetryDelayMs.toDouble(), initialRetryDelayMs * 2.0.pow(attempt)).toLong()
+}
+
+enum class OutboxDeliveryState {
+    /** Stored locally and visible in the conversation, waiting to be published. */
+    STAGED,
+    PUBLISHED,
+
+    /** Publishing failed; another attempt is scheduled. */
+    RETRYING,
+
+    /** Publishing failed and no more attempts will be made. */
+    FAILED,
+}
+
+data class OutboxEvent(
+    val conversationId: String,
+    val messageId: String,
+    val state: OutboxDeliveryState,
+    val attempt: Int = 0,
+    val error: Exception? = null,
+)
+
+/**
+ * Sends messages optimistically and publishes them in batches.
+ *
+ * [send] stores the message locally (so it shows up in the conversation right away) and returns
+ * its ID. Messages queued in the same conversation within [OutboxOptions.flushDelayMs] of each
+ * other, or up to [OutboxOptions.maxBatchSize] of them, are published with a single
+ * [Conversation.publishMessages] call. Messages that end up [MessageDeliveryStatus.FAILED] are
+ * republished with exponential backoff. Every state change is reported on [events].
+ */
+class Outbox internal constructor(
+    private val client: Client,
+    val options: OutboxOptions = OutboxOptions(),
+) {
+    private class PendingBatch(
+        val conversation: Conversation,
+    ) {
+        val messageIds = mutableListOf<String>()
+        var flushJob: Job? = null
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val lock = Mutex()
+    private val pending = HashMap<String, PendingBatch>()
+
+    private val _events = MutableSharedFlow<OutboxEvent>(extraBufferCapacity = EVENT_BUFFER_CAPACITY)
+    val events: SharedFlow<OutboxEvent> = _events.asSharedFlow()
+
+    /**
+     * Stages [content] in [conversation] and queues it for publishing.
+     * @return The ID of the staged message.
+     */
+    suspend fun <T> send(
+        conversation: Conversation,
+        content: T,
+        options: SendOptions? = null,
+    ): String {
+        val (encodedContent, opts) = Client.codecRegistry.encodeContent(content, options)
+        val messageId = conversation.prepareMessage(encodedContent, opts)
+        val conversationId = conversation.id
+        _events.emit(OutboxEvent(conversationId, messageId, OutboxDeliveryState.STAGED))
+
+        val flushNow =
+            lock.withLock {
+                val batch = pending.getOrPut(conversationId) { PendingBatch(conversation) }
+                batch.messageIds.add(messageId)
+                if (batch.messageIds.size >= this.options.maxBatchSize) {
+                    true
+                } else {
+                    if (batch.flushJob == null) {
+                        batch.flushJob =
+                            scope.launch {
+                                delay(this@Outbox.options.flushDelayMs)
+                                flush(conversationId)
+                            }
+                    }
+                    false
+                }
+            }
+        if (flushNow) flush(conversationId)
+        return messageId
+    }
+
+    /**
+     * Publishes everything that is waiting, without waiting for the flush timers.
+     */
+    suspend fun flush() {
+        val conversationIds = lock.withLock { pending.keys.toList() }
+        conversationIds.forEach { flush(it) }
+    }
+
+    /**
+     * Stops all timers and retries. Messages that were not published yet stay staged in their
+     * conversations and go out with the next [Conversation.publishMessages].
+     */
+    fun close() {
+        scope.cancel()
+    }
+
+    private suspend fun flush(conversationId: String) {
+        val batch = lock.withLock { pending.remove(conversationId) } ?: return
+        // Called from the batch's own timer when it fires; only cancel it when flushing early.
+        if (batch.flushJob != coroutineContext[Job]) batch.flushJob?.cancel()
+        val error =
+            try {
+                batch.conversation.publishMessages()
+                null
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to publish messages in $conversationId", e)
+                e
+            }
+        batch.messageIds.forEach { messageId ->
+            reportOutcome(batch.conversation, conversationId, messageId, attempt = 0, error = error)
+        }
+    }
+
+    private suspend fun reportOutcome(
+        conversation: Conversation,
+        conversationId: String,
+        messageId: String,
+        attempt: Int,
+        error: Exception?,
+    ) {
+        val status = client.conversations.findMessage(messageId)?.deliveryStatus
+        if (status == MessageDeliveryStatus.PUBLISHED) {
+            _events.emit(OutboxEvent(conversationId, messageId, OutboxDeliveryState.PUBLISHED, attempt))
+            return
+        }
+        if (attempt >= options.maxRetries) {
+            _events.emit(OutboxEvent(conversationId, messageId, OutboxDeliveryState.FAILED, attempt, error))
+            return
+        }
+        _events.emit(OutboxEvent(conversationId, messageId, OutboxDeliveryState.RETRYING, attempt, error))
+        scope.launch { retry(conversation, conversationId, messageId, attempt + 1) }
+    }
+
+    private suspend fun retry(
+        conversation: Conversation,
+        conversationId: String,
+        messageId: String,
+        attempt: Int,
+    ) {
+        delay(options.retryDelayMs(attempt - 1))
+        val error =
+            try {
+                conversation.publishMessage(messageId)
+                null
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                e
+            }
+        reportOutcome(conversation, conversationId, messageId, attempt, error)
+    }
+
+    companion object {
+        private const val TAG = "XMTP Outbox"
+        private const val EVENT_BUFFER_CAPACITY = 256
+    }
+}
@@ -94,14 +94,18 @@ data class PrivatePreferences(
         ffiClient.sendSyncRequest()
     }
 
-    suspend fun streamPreferenceUpdates(onClose: (() -> Unit)? = null): Flow<PreferenceType> =
+    suspend fun streamPreferenceUpdates(
+        onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
+    ): Flow<PreferenceType> =
         callbackFlow {
+            val sink = StreamSink<PreferenceType>(this, options) { it }
             val preferenceCallback =
                 object : FfiPreferenceCallback {
                     override fun onPreferenceUpdate(preference: List<FfiPreferenceUpdate>) {
                         preference.iterator().forEach {
                             when (it) {
-                                is FfiPreferenceUpdate.Hmac -> trySend(PreferenceType.HMAC_KEYS)
+                                is FfiPreferenceUpdate.Hmac -> sink.send(PreferenceType.HMAC_KEYS)
                             }
                         }
                     }
@@ -118,16 +122,23 @@ data class PrivatePreferences(
 
             val stream = ffiClient.conversations().streamPreferences(preferenceCallback)
 
-            awaitClose { stream.end() }
-        }
+            awaitClose {
+                sink.close()
+                stream.end()
+            }
+        }.withStreamOptions(options)
 
-    suspend fun streamConsent(onClose: (() -> Unit)? = null): Flow<ConsentRecord> =
+    suspend fun streamConsent(
+        onClose: (() -> Unit)? = null,
+        options: StreamOptions = StreamOptions(),
+    ): Flow<ConsentRecord> =
         callbackFlow {
+            val sink = StreamSink<ConsentRecord>(this, options) { it.key }
             val consentCallback =
                 object : FfiConsentCallback {
                     override fun onConsentUpdate(consent: List<FfiConsent>) {
                         consent.iterator().forEach {
-                            trySend(it.fromFfiConsent())
+                            sink.send(it.fromFfiConsent())
                         }
                     }
 
@@ -143,8 +154,11 @@ data class PrivatePreferences(
 
             val stream = ffiClient.conversations().streamConsent(consentCallback)
 
-            awaitClose { stream.end() }
-        }
+            awaitClose {
+                sink.close()
+                stream.end()
+            }
+        }.withStreamOptions(options)
 
     suspend fun setConsentState(entries: List<ConsentRecord>) {
         ffiClient.setConsentStates(entries.map { it.toFfiConsent() })
@@ -0,0 +1,134 @@
+package org.xmtp.android.library
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import kotlin.math.min
+import kotlin.math.pow
+
+/**
+ * Reconnection settings for the resilient message streams.
+ *
+ * @param initialDelayMs Delay before the first reconnection attempt.
+ * @param maxDelayMs Upper bound for the exponential backoff between attempts.
+ * @param multiplier Factor applied to the delay after every consecutive failure.
+ * @param maxAttempts Consecutive failed attempts after which the stream gives up, or null to retry forever.
+ * @param dedupeCapacity How many recently delivered message IDs are remembered to drop duplicates
+ *                       between the gap fill and the live stream.
+ */
+data class StreamRetryOptions(
+    val initialDelayMs: Long = 500,
+    val maxDelayMs: Long = 30_000,
+    val multiplier: Double = 2.0,
+    val maxAttempts: Int? = null,
+    val dedupeCapacity: Int = 1_000,
+) {
+    init {
+        require(initialDelayMs >= 0) { "initialDelayMs must not be negative" }
+        require(maxDelayMs >= initialDelayMs) { "maxDelayMs must be at least initialDelayMs" }
+        require(multiplier >= 1.0) { "multiplier must be at least 1" }
+        require(dedupeCapacity > 0) { "dedupeCapacity must be greater than 0" }
+    }
+
+    internal fun delayForAttempt(attempt: Int): Long =
+        min(maxDelayMs.toDouble(), initialDelayMs * multiplier.pow(attempt)).toLong()
+}
+
+/**
+ * Runs [live] and keeps it running: whenever the underlying subscription closes or fails it is
+ * reopened with exponential backoff, and messages inserted while it was down are replayed from
+ * the local database through [backfill] before live delivery resumes.
+ *
+ * The backfill query only runs once the live subscription reports it is ready, so nothing falls
+ * between the two; messages seen by both are delivered once.
+ *
+ * @param live Opens a new live subscription, calling the given function once it is ready. The
+ * flow completes when the subscription closes.
+ * @param backfill Syncs and returns the messages inserted after the given watermark, oldest first.
+ * @param startWatermarkNs Resume after this inserted timestamp, replaying everything newer first.
+ */
+internal fun resilientMessageStream(
+    tag: String,
+    options: StreamRetryOptions,
+    startWatermarkNs: Long?,
+    live: (onReady: () -> Unit) -> Flow<DecodedMessage>,
+    backfill: suspend (insertedAfterNs: Long) -> List<DecodedMessage>,
+): Flow<DecodedMessage> =
+    channelFlow {
+        var watermarkNs = startWatermarkNs ?: (System.currentTimeMillis() * 1_000_000)
+        var needsBackfill = startWatermarkNs != null
+        var failures = 0
+        val recentIds = RecentIds(options.dedupeCapacity)
+
+        suspend fun deliver(message: DecodedMessage) {
+            if (!recentIds.add(message.id)) return
+            send(message)
+            if (message.insertedAtNs > watermarkNs) watermarkNs = message.insertedAtNs
+        }
+
+        while (true) {
+            val liveMessages = Channel<DecodedMessage>(Channel.UNLIMITED)
+            val ready = CompletableDeferred<Unit>()
+            val liveJob =
+                launch {
+                    try {
+                        live { ready.complete(Unit) }.collect { liveMessages.send(it) }
+                        liveMessages.close()
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        liveMessages.close(e)
+                    } finally {
+                        // Don't keep the backfill waiting on a subscription that never came up.
+                        ready.complete(Unit)
+                    }
+                }
+            try {
+                if (needsBackfill) {
+                    ready.await()
+                    backfill(watermarkNs).forEach { deliver(it) }
+                }
+                for (message in liveMessages) {
+                    deliver(message)
+                    failures = 0
+                }
+                Log.w(tag, "Stream closed, reconnecting")
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Log.e(tag, "Stream failed, reconnecting", e)
+            } finally {
+                liveJob.cancel()
+            }
+
+            if (options.maxAttempts != null && failures >= options.maxAttempts) {
+                throw XMTPException("Stream failed after $failures reconnection attempts")
+            }
+            delay(options.delayForAttempt(failures))
+            failures++
+            needsBackfill = true
+        }
+    }
+
+/**
+ * Bounded set of the most recently added IDs.
+ */
+private class RecentIds(
+    private val capacity: Int,
+) {
+    private val ids = LinkedHashSet<String>()
+
+    fun add(id: String): Boolean {
+        if (!ids.add(id)) return false
+        if (ids.size > capacity) {
+            ids.remove(ids.first())
+        }
+        return true
+    }
+}
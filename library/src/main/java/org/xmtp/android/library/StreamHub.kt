@@ -0,0 +1,128 @@
+package org.xmtp.android.library
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.onSubscription
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.xmtp.android.library.libxmtp.DecodedMessage
+
+/**
+ * Multiplexes per-conversation message streams over a single all-messages subscription.
+ *
+ * Every [messages] collector for any conversation shares one underlying
+ * `streamAllMessages` stream, which is opened when the first collector arrives and ended when
+ * the last one leaves. Watching many conversations at once therefore holds a single native
+ * subscription instead of one per conversation.
+ *
+ * Messages are delivered to each conversation's collectors in order; a collector that falls
+ * more than [bufferCapacity] messages behind slows delivery to the others until it catches up.
+ */
+class StreamHub internal constructor(
+    private val conversations: Conversations,
+    private val bufferCapacity: Int = DEFAULT_BUFFER_CAPACITY,
+) {
+    private class Subscription(
+        capacity: Int,
+    ) {
+        val messages = MutableSharedFlow<DecodedMessage>(extraBufferCapacity = capacity)
+        var refCount = 0
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val lock = Any()
+    private val subscriptions = HashMap<String, Subscription>()
+    private var upstream: Job? = null
+
+    /**
+     * Streams the messages of [conversationId] through the shared subscription.
+     */
+    fun messages(conversationId: String): Flow<DecodedMessage> =
+        flow {
+            val subscription = acquire(conversationId)
+            try {
+                // Only start the shared stream once this collector is subscribed; a message routed
+                // before then would reach no one and be dropped.
+                emitAll(subscription.messages.onSubscription { ensureUpstream() })
+            } finally {
+                release(conversationId)
+            }
+        }
+
+    /**
+     * Number of conversations that currently have at least one collector.
+     */
+    val activeConversationCount: Int
+        get() = synchronized(lock) { subscriptions.size }
+
+    val isStreaming: Boolean
+        get() = synchronized(lock) { upstream?.isActive == true }
+
+    private fun acquire(conversationId: String): Subscription =
+        synchronized(lock) {
+            val subscription = subscriptions.getOrPut(conversationId) { Subscription(bufferCapacity) }
+            subscription.refCount++
+            subscription
+        }
+
+    private fun ensureUpstream() {
+        synchronized(lock) {
+            if (upstream == null && subscriptions.isNotEmpty()) {
+                upstream = startUpstream()
+            }
+        }
+    }
+
+    private fun release(conversationId: String) {
+        synchronized(lock) {
+            val subscription = subscriptions[conversationId] ?: return
+            subscription.refCount--
+            if (subscription.refCount == 0) {
+                subscriptions.remove(conversationId)
+            }
+            if (subscriptions.isEmpty()) {
+                upstream?.cancel()
+                upstream = null
+            }
+        }
+    }
+
+    private fun startUpstream(): Job =
+        scope.launch {
+            // The stream ends on its own when the connection closes; reopen it for as long as
+            // anyone is still listening.
+            while (isActive) {
+                try {
+                    conversations
+                        .streamAllMessages(consentStates = ALL_CONSENT_STATES)
+                        .collect { message ->
+                            val subscription = synchronized(lock) { subscriptions[message.conversationId] }
+                            subscription?.messages?.emit(message)
+                        }
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "Shared message stream failed", e)
+                }
+                delay(RESTART_DELAY_MS)
+            }
+        }
+
+    companion object {
+        private const val TAG = "XMTP StreamHub"
+        private const val DEFAULT_BUFFER_CAPACITY = 64
+        private const val RESTART_DELAY_MS = 1_000L
+
+        // Per-conversation streams are not filtered by consent, so the shared stream must not be either.
+        private val ALL_CONSENT_STATES = listOf(ConsentState.ALLOWED, ConsentState.UNKNOWN, ConsentState.DENIED)
+    }
+}
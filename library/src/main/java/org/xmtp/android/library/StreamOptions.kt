@@ -0,0 +1,202 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ClosedSendChannelException
+import kotlinx.coroutines.channels.ProducerScope
+import kotlinx.coroutines.channels.trySendBlocking
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * What a stream does when its collector falls [StreamOptions.bufferCapacity] events behind.
+ */
+enum class StreamOverflowPolicy {
+    /**
+     * Discard the new event. The callback thread never waits, which is how streams have always
+     * behaved.
+     */
+    DROP_LATEST,
+
+    /**
+     * Block the callback thread delivering the event until the collector catches up. Nothing is
+     * lost, but that thread belongs to libxmtp, so a slow collector also holds up every other
+     * stream it delivers to. Only use this when the collector keeps up with bursts.
+     */
+    SUSPEND,
+
+    /** Discard the oldest buffered event to make room for the new one. */
+    DROP_OLDEST,
+
+    /**
+     * Keep only the newest buffered event per conversation (or per consent entry, for consent
+     * streams), dropping the oldest conversation's event if the buffer is still full.
+     */
+    CONFLATE_PER_CONVERSATION,
+}
+
+/**
+ * Counters for a stream. A single instance can be shared by several streams to aggregate them.
+ */
+class StreamMetrics {
+    private val deliveredCount = AtomicLong()
+    private val droppedCount = AtomicLong()
+    private val decodeFailedCount = AtomicLong()
+
+    /** Events handed to the collector. */
+    val delivered: Long
+        get() = deliveredCount.get()
+
+    /** Events discarded by the overflow policy. */
+    val dropped: Long
+        get() = droppedCount.get()
+
+    /** Events received from the network that could not be decoded. */
+    val decodeFailed: Long
+        get() = decodeFailedCount.get()
+
+    internal fun recordDelivered() {
+        deliveredCount.incrementAndGet()
+    }
+
+    internal fun recordDropped() {
+        droppedCount.incrementAndGet()
+    }
+
+    internal fun recordDecodeFailed() {
+        decodeFailedCount.incrementAndGet()
+    }
+}
+
+/**
+ * Buffering and backpressure settings for the `stream*` functions.
+ *
+ * By default a full buffer drops new events without blocking the libxmtp callback thread.
+ * Blocking back-pressure is opt-in through [StreamOverflowPolicy.SUSPEND].
+ *
+ * @param bufferCapacity How many events may be waiting for the collector.
+ * @param overflowPolicy What happens to events once the buffer is full.
+ * @param metrics Counters to update, or null to skip accounting.
+ */
+data class StreamOptions(
+    val bufferCapacity: Int = Channel.CHANNEL_DEFAULT_CAPACITY,
+    val overflowPolicy: StreamOverflowPolicy = StreamOverflowPolicy.DROP_LATEST,
+    val metrics: StreamMetrics? = null,
+) {
+    init {
+        require(bufferCapacity > 0) { "bufferCapacity must be greater than 0" }
+    }
+}
+
+/**
+ * Applies [options] to a `callbackFlow` whose callbacks deliver through a [StreamSink].
+ */
+internal fun <T> Flow<T>.withStreamOptions(options: StreamOptions): Flow<T> {
+    val buffered =
+        when (options.overflowPolicy) {
+            StreamOverflowPolicy.DROP_LATEST, StreamOverflowPolicy.SUSPEND -> buffer(options.bufferCapacity)
+            // The sink does its own buffering so it can account for what it drops.
+            else -> buffer(Channel.RENDEZVOUS)
+        }
+    val metrics = options.metrics ?: return buffered
+    return buffered.onEach { metrics.recordDelivered() }
+}
+
+/**
+ * Delivers events from FFI callbacks into a `callbackFlow` according to a [StreamOptions].
+ * Must be [closed][close] from the flow's `awaitClose` block.
+ *
+ * @param conflationKey Identifies the conversation an event belongs to, for
+ *                      [StreamOverflowPolicy.CONFLATE_PER_CONVERSATION].
+ */
+internal class StreamSink<T>(
+    private val producer: ProducerScope<T>,
+    private val options: StreamOptions,
+    private val conflationKey: (T) -> Any,
+) {
+    private val pending = LinkedHashMap<Any, T>()
+    private val pendingSignal = Channel<Unit>(Channel.CONFLATED)
+    private var sequence = 0L
+
+    init {
+        if (options.overflowPolicy == StreamOverflowPolicy.DROP_OLDEST ||
+            options.overflowPolicy == StreamOverflowPolicy.CONFLATE_PER_CONVERSATION
+        ) {
+            producer.launch {
+                try {
+                    for (signal in pendingSignal) {
+                        while (true) {
+                            val next = synchronized(pending) { pending.pollFirst() } ?: break
+                            producer.send(next)
+                        }
+                    }
+                } catch (e: ClosedSendChannelException) {
+                    // The stream was closed with events still pending.
+                }
+            }
+        }
+    }
+
+    fun send(event: T) {
+        when (options.overflowPolicy) {
+            StreamOverflowPolicy.DROP_LATEST -> {
+                // Fails when the buffer is full or the stream has closed; either way the event is gone.
+                if (producer.trySend(event).isFailure) options.metrics?.recordDropped()
+            }
+
+            StreamOverflowPolicy.SUSPEND -> {
+                // Blocks this callback thread while the buffer is full; that is the policy.
+                val result = producer.trySendBlocking(event)
+                if (result.isFailure) {
+                    // The collector is gone or the stream failed. End the stream rather than keep
+                    // losing events without anyone noticing.
+                    options.metrics?.recordDropped()
+                    producer.close(result.exceptionOrNull())
+                }
+            }
+
+            StreamOverflowPolicy.DROP_OLDEST -> enqueue(synchronized(pending) { sequence++ }, event)
+
+            StreamOverflowPolicy.CONFLATE_PER_CONVERSATION -> enqueue(conflationKey(event), event)
+        }
+    }
+
+    fun decodeFailed() {
+        options.metrics?.recordDecodeFailed()
+    }
+
+    fun close() {
+        pendingSignal.close()
+    }
+
+    private fun enqueue(
+        key: Any,
+        event: T,
+    ) {
+        synchronized(pending) {
+            // Re-insert rather than overwrite so a busy conversation's newest event moves to the
+            // back of the queue instead of being the first evicted.
+            if (pending.remove(key) != null) {
+                pending[key] = event
+                options.metrics?.recordDropped()
+            } else {
+                pending[key] = event
+                if (pending.size > options.bufferCapacity) {
+                    pending.pollFirst()
+                    options.metrics?.recordDropped()
+                }
+            }
+        }
+        pendingSignal.trySend(Unit)
+    }
+
+    private fun LinkedHashMap<Any, T>.pollFirst(): T? {
+        val iterator = entries.iterator()
+        if (!iterator.hasNext()) return null
+        val first = iterator.next()
+        iterator.remove()
+        return first.value
+    }
+}
@@ -19,5 +19,27 @@ sealed class Topic {
             }
         }
 
-    private fun wrapMls(value: String): String = "/xmtp/mls/1/$value/proto"
+    private fun wrapMls(value: String): String = "$MLS_PREFIX$value$PROTO_SUFFIX"
+
+    companion object {
+        private const val MLS_PREFIX = "/xmtp/mls/1/"
+        private const val PROTO_SUFFIX = "/proto"
+
+        /**
+         * Parses a topic in the form produced by [description]. Returns null for anything that is
+         * not a group message or welcome topic.
+         */
+        fun parse(topic: String): Topic? {
+            if (!topic.startsWith(MLS_PREFIX) || !topic.endsWith(PROTO_SUFFIX)) return null
+            val start = MLS_PREFIX.length
+            val end = topic.length - PROTO_SUFFIX.length
+            if (end < start + 2 || topic[start + 1] != '-') return null
+            val value = topic.substring(start + 2, end)
+            return when (topic[start]) {
+                'g' -> groupMessage(value)
+                'w' -> userWelcome(value)
+                else -> null
+            }
+        }
+    }
 }
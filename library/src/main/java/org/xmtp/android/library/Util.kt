@@ -1,7 +1,6 @@
 package org.xmtp.android.library
 
 import org.bouncycastle.jcajce.provider.digest.Keccak
-import org.web3j.utils.Numeric
 
 class Util {
     companion object {
@@ -12,9 +11,58 @@ class Util {
     }
 }
 
-fun ByteArray.toHex(): String = joinToString(separator = "") { eachByte -> "%02x".format(eachByte) }
+private val HEX_DIGITS = "0123456789abcdef".toCharArray()
 
-fun String.hexToByteArray(): ByteArray = Numeric.hexStringToByteArray(this)
+private val HEX_VALUES =
+    IntArray(128) { -1 }.also { values ->
+        for (i in 0..9) values['0'.code + i] = i
+        for (i in 0..5) {
+            values['a'.code + i] = 10 + i
+            values['A'.code + i] = 10 + i
+        }
+    }
+
+/**
+ * Lowercase hex encoding of this array, two characters per byte.
+ */
+fun ByteArray.toHex(): String {
+    val chars = CharArray(size * 2)
+    for (i in indices) {
+        val value = this[i].toInt() and 0xff
+        chars[i * 2] = HEX_DIGITS[value ushr 4]
+        chars[i * 2 + 1] = HEX_DIGITS[value and 0x0f]
+    }
+    return String(chars)
+}
+
+/**
+ * Decodes a hex string, with or without a `0x` prefix. An odd number of digits is read as if it
+ * had a leading zero.
+ *
+ * @throws IllegalArgumentException if the string contains a character that is not a hex digit.
+ */
+fun String.hexToByteArray(): ByteArray {
+    val start = if (length >= 2 && this[0] == '0' && (this[1] == 'x' || this[1] == 'X')) 2 else 0
+    val digits = length - start
+    val bytes = ByteArray((digits + 1) / 2)
+    var index = start
+    var offset = 0
+    if (digits % 2 == 1) {
+        bytes[offset++] = hexValue(index++).toByte()
+    }
+    while (index < length) {
+        bytes[offset++] = ((hexValue(index) shl 4) or hexValue(index + 1)).toByte()
+        index += 2
+    }
+    return bytes
+}
+
+private fun String.hexValue(index: Int): Int {
+    val char = this[index]
+    val value = if (char.code < HEX_VALUES.size) HEX_VALUES[char.code] else -1
+    require(value >= 0) { "Invalid hex character '$char' at index $index" }
+    return value
+}
 
 fun validateInboxId(inboxId: InboxId) {
     if (inboxId.startsWith("0x", ignoreCase = true)) {
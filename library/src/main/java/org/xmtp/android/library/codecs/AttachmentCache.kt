@@ -0,0 +1,327 @@
+package org.xmtp.android.library.codecs
+
+import com.google.protobuf.ByteString
+import org.web3j.crypto.Hash
+import org.xmtp.android.library.toHex
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.security.DigestInputStream
+import java.security.MessageDigest
+
+/**
+ * Two-tier cache for [RemoteAttachment.load] and [RemoteAttachment.loadAttachmentToFile], keyed by
+ * the attachment's content digest.
+ *
+ * The disk tier keeps payloads exactly as they were fetched, still encrypted, in files named after
+ * their digest, so nothing readable is written to disk and every read is checked against the
+ * digest the same way a fresh download is; an entry that fails the check is dropped and fetched
+ * again. The memory tier keeps the decrypted content of small attachments loaded with
+ * [RemoteAttachment.load], so binding the same image again skips both the download and the
+ * decryption. Both tiers evict the least recently used entries to stay within their byte budgets.
+ *
+ * @param directory Where payloads are stored. Should be used by nothing else.
+ * @param maxDiskBytes Upper bound for the size of all stored payloads.
+ * @param maxMemoryBytes Upper bound for the encoded size of the content kept in memory.
+ * @param maxMemoryEntryBytes Content larger than this is only cached on disk.
+ */
+class AttachmentCache(
+    val directory: File,
+    val maxDiskBytes: Long = DEFAULT_MAX_DISK_BYTES,
+    val maxMemoryBytes: Long = DEFAULT_MAX_MEMORY_BYTES,
+    val maxMemoryEntryBytes: Int = DEFAULT_MAX_MEMORY_ENTRY_BYTES,
+) {
+    private class MemoryEntry(
+        val secret: ByteString,
+        val salt: ByteString,
+        val nonce: ByteString,
+        val content: EncodedContent,
+    )
+
+    private val memory = LinkedHashMap<String, MemoryEntry>(INITIAL_CAPACITY, LOAD_FACTOR, true)
+    private val disk = LinkedHashMap<String, Long>(INITIAL_CAPACITY, LOAD_FACTOR, true)
+    private var memorySizeBytes = 0L
+    private var diskSizeBytes = 0L
+    private var memoryHits = 0L
+    private var diskHits = 0L
+    private var misses = 0L
+    private var corrupted = 0L
+
+    init {
+        directory.mkdirs()
+        // Pick up payloads from earlier runs, oldest first so they are evicted first.
+        val files = directory.listFiles().orEmpty()
+        // Left behind by a write that was interrupted.
+        files.filter { it.name.endsWith(TEMP_SUFFIX) }.forEach { it.delete() }
+        files
+            .filter { it.isFile && isDigest(it.name) }
+            .sortedBy { it.lastModified() }
+            .forEach {
+                disk[it.name] = it.length()
+                diskSizeBytes += it.length()
+            }
+        synchronized(this) { trimDisk() }
+    }
+
+    val memoryHitCount: Long
+        get() = synchronized(this) { memoryHits }
+
+    val diskHitCount: Long
+        get() = synchronized(this) { diskHits }
+
+    val missCount: Long
+        get() = synchronized(this) { misses }
+
+    /** Disk entries dropped because they no longer matched their digest. */
+    val corruptedCount: Long
+        get() = synchronized(this) { corrupted }
+
+    val memorySize: Long
+        get() = synchronized(this) { memorySizeBytes }
+
+    val diskSize: Long
+        get() = synchronized(this) { diskSizeBytes }
+
+    /**
+     * Decrypted content for [contentDigest] if it is held in memory and was decrypted with
+     * [secret], [salt] and [nonce]; a message that names someone else's payload without its key
+     * gets nothing. Does not count a miss; a miss is counted by [payload] when the disk tier misses
+     * too.
+     */
+    fun content(
+        contentDigest: String,
+        secret: ByteString,
+        salt: ByteString,
+        nonce: ByteString,
+    ): EncodedContent? =
+        synchronized(this) {
+            memory[contentDigest]
+                ?.takeIf { it.secret == secret && it.salt == salt && it.nonce == nonce }
+                ?.content
+                ?.also { memoryHits++ }
+        }
+
+    /**
+     * The stored payload for [contentDigest], or null if there is none or it no longer matches
+     * the digest.
+     */
+    fun payload(contentDigest: String): ByteArray? {
+        val stored = synchronized(this) { disk.containsKey(contentDigest) }
+        val payload =
+            if (stored) {
+                try {
+                    file(contentDigest).readBytes()
+                } catch (e: IOException) {
+                    null
+                }
+            } else {
+                null
+            }
+        val usable = recordRead(contentDigest, stored, payload?.let { Hash.sha256(it).toHex() })
+        return if (usable) payload else null
+    }
+
+    /**
+     * Streams the stored payload for [contentDigest] through [read], along with its size, checking
+     * it against the digest as it goes; the counterpart of [payload] for payloads too large to
+     * read into memory. Returns null if there is none or it no longer matches the digest, in which
+     * case whatever [read] made of it must be discarded. If [read] throws for a payload that still
+     * matches, the exception is rethrown.
+     */
+    fun <R : Any> readPayload(
+        contentDigest: String,
+        read: (InputStream, Long) -> R,
+    ): R? {
+        val stored = synchronized(this) { disk.containsKey(contentDigest) }
+        if (!stored) {
+            recordRead(contentDigest, stored = false, digest = null)
+            return null
+        }
+        val file = file(contentDigest)
+        var result: R? = null
+        val digest =
+            try {
+                val sha256 = MessageDigest.getInstance("SHA-256")
+                DigestInputStream(file.inputStream().buffered(), sha256).use { input ->
+                    result = read(input, file.length())
+                    // Whatever [read] left unread still has to match the digest.
+                    val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+                    while (input.read(buffer) >= 0) continue
+                }
+                sha256.digest().toHex()
+            } catch (e: Exception) {
+                // A payload that no longer matches its digest explains any failure; otherwise it
+                // is the caller's to handle.
+                val actual = sha256Hex(file)
+                if (actual == contentDigest) throw e
+                actual
+            }
+        return if (recordRead(contentDigest, stored = true, digest = digest)) result else null
+    }
+
+    /**
+     * Caches an attachment whose [payload] has been verified against [contentDigest] and decrypted
+     * with [secret], [salt] and [nonce] to [content].
+     */
+    fun put(
+        contentDigest: String,
+        secret: ByteString,
+        salt: ByteString,
+        nonce: ByteString,
+        payload: ByteArray,
+        content: EncodedContent,
+    ) {
+        putContent(contentDigest, MemoryEntry(secret, salt, nonce, content))
+        store(contentDigest, payload.size.toLong()) { it.writeBytes(payload) }
+    }
+
+    /**
+     * Caches a [payload] file that has been verified against [contentDigest], on disk only.
+     * [payload] itself is left in place.
+     */
+    fun putPayload(
+        contentDigest: String,
+        payload: File,
+    ) {
+        store(contentDigest, payload.length()) { payload.copyTo(it, overwrite = true) }
+    }
+
+    /**
+     * Caches a [payload] that has been verified against [contentDigest], on disk only.
+     */
+    fun putPayload(
+        contentDigest: String,
+        payload: ByteArray,
+    ) {
+        store(contentDigest, payload.size.toLong()) { it.writeBytes(payload) }
+    }
+
+    fun clear() {
+        synchronized(this) {
+            memory.clear()
+            memorySizeBytes = 0
+            disk.keys.forEach { file(it).delete() }
+            disk.clear()
+            diskSizeBytes = 0
+        }
+    }
+
+    // Counts a read of the disk entry for [contentDigest] whose content hashed to [digest], or
+    // could not be read if null, and drops the entry if it is unusable. Returns whether it is usable.
+    private fun recordRead(
+        contentDigest: String,
+        stored: Boolean,
+        digest: String?,
+    ): Boolean =
+        synchronized(this) {
+            when {
+                digest == null -> {
+                    if (stored) remove(contentDigest)
+                    misses++
+                    false
+                }
+
+                digest != contentDigest -> {
+                    remove(contentDigest)
+                    corrupted++
+                    misses++
+                    false
+                }
+
+                else -> {
+                    diskHits++
+                    // Reading the entry moves it to the most recently used end; the timestamp
+                    // carries that order over to the next run.
+                    disk[contentDigest]
+                    file(contentDigest).setLastModified(System.currentTimeMillis())
+                    true
+                }
+            }
+        }
+
+    // Writes a payload of [size] bytes to disk with [write], under a temporary name until it is
+    // complete so a crash never leaves a partial payload behind.
+    private fun store(
+        contentDigest: String,
+        size: Long,
+        write: (File) -> Unit,
+    ) {
+        if (!isDigest(contentDigest) || size > maxDiskBytes) return
+        if (synchronized(this) { disk.containsKey(contentDigest) }) return
+        val temp = File(directory, contentDigest + TEMP_SUFFIX)
+        try {
+            write(temp)
+            synchronized(this) {
+                if (!temp.renameTo(file(contentDigest))) return
+                disk.put(contentDigest, size)?.let { diskSizeBytes -= it }
+                diskSizeBytes += size
+                trimDisk()
+            }
+        } catch (e: IOException) {
+            // Caching is best effort.
+        } finally {
+            temp.delete()
+        }
+    }
+
+    private fun putContent(
+        contentDigest: String,
+        entry: MemoryEntry,
+    ) {
+        val size = entry.content.serializedSize
+        if (size > maxMemoryEntryBytes || size > maxMemoryBytes) return
+        synchronized(this) {
+            memory.put(contentDigest, entry)?.let { memorySizeBytes -= it.content.serializedSize }
+            memorySizeBytes += size
+            val iterator = memory.values.iterator()
+            while (memorySizeBytes > maxMemoryBytes && iterator.hasNext()) {
+                memorySizeBytes -= iterator.next().content.serializedSize
+                iterator.remove()
+            }
+        }
+    }
+
+    private fun remove(contentDigest: String) {
+        disk.remove(contentDigest)?.let { diskSizeBytes -= it }
+        file(contentDigest).delete()
+    }
+
+    private fun trimDisk() {
+        val iterator = disk.entries.iterator()
+        while (diskSizeBytes > maxDiskBytes && iterator.hasNext()) {
+            val (digest, size) = iterator.next()
+            iterator.remove()
+            diskSizeBytes -= size
+            file(digest).delete()
+        }
+    }
+
+    private fun file(contentDigest: String): File = File(directory, contentDigest)
+
+    // SHA-256 of [file] as hex, or null if it can't be read.
+    private fun sha256Hex(file: File): String? =
+        try {
+            val sha256 = MessageDigest.getInstance("SHA-256")
+            DigestInputStream(file.inputStream().buffered(), sha256).use { input ->
+                val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+                while (input.read(buffer) >= 0) continue
+            }
+            sha256.digest().toHex()
+        } catch (e: IOException) {
+            null
+        }
+
+    // Digests name files, so only accept what a SHA-256 hex digest looks like.
+    private fun isDigest(value: String): Boolean =
+        value.length == DIGEST_HEX_LENGTH && value.all { it in '0'..'9' || it in 'a'..'f' }
+
+    companion object {
+        const val DEFAULT_MAX_DISK_BYTES = 100L * 1024 * 1024
+        const val DEFAULT_MAX_MEMORY_BYTES = 8L * 1024 * 1024
+        const val DEFAULT_MAX_MEMORY_ENTRY_BYTES = 256 * 1024
+        private const val DIGEST_HEX_LENGTH = 64
+        private const val TEMP_SUFFIX = ".tmp"
+        private const val INITIAL_CAPACITY = 64
+        private const val LOAD_FACTOR = 0.75f
+    }
+}
@@ -0,0 +1,177 @@
+package org.xmtp.android.library.codecs
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.filterIsInstance
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.io.File
+import java.io.IOException
+import java.net.URL
+
+/**
+ * Progress and results of [AttachmentDownloader.download]. [index] is the position of the
+ * attachment in the list being downloaded.
+ */
+sealed class AttachmentDownloadEvent {
+    abstract val index: Int
+
+    /**
+     * @param bytesRead Bytes of this attachment's encrypted payload downloaded so far.
+     * @param contentLength Size of this attachment's payload, or -1 if the server did not say.
+     * @param totalBytesRead Bytes downloaded so far across all attachments.
+     * @param totalContentLength Size of all payloads, or -1 until every size is known.
+     */
+    data class Progress(
+        override val index: Int,
+        val bytesRead: Long,
+        val contentLength: Long,
+        val totalBytesRead: Long,
+        val totalContentLength: Long,
+    ) : AttachmentDownloadEvent()
+
+    data class Completed(
+        override val index: Int,
+        val attachment: AttachmentFile,
+    ) : AttachmentDownloadEvent()
+}
+
+/**
+ * Downloads and decrypts the attachments of a [MultiRemoteAttachment] in parallel, at most
+ * [concurrency] at a time, writing each one to disk with [RemoteAttachment.loadAttachmentToFile].
+ *
+ * The default [HTTPFetcher] reuses connections; keep [concurrency] at or below the platform's
+ * keep-alive pool size (`http.maxConnections`, 5 by default) for reuse to pay off. Each payload
+ * is limited to what the attachment's `contentLength` allows. Cancellation is checked whenever
+ * [fetcher] reports progress or checks for it, which [HTTPFetcher] does between reads and while
+ * waiting to retry, so a download stalled on the network stops within its read timeout.
+ *
+ * With a [cache], payloads already on disk are not downloaded again, and downloaded ones are kept.
+ */
+class AttachmentDownloader(
+    val concurrency: Int = DEFAULT_CONCURRENCY,
+    private val fetcher: StreamingFetcher = HTTPFetcher(),
+    private val cache: AttachmentCache? = null,
+) {
+    init {
+        require(concurrency > 0) { "concurrency must be greater than 0" }
+    }
+
+    private class Totals(
+        count: Int,
+    ) {
+        private val contentLengths = LongArray(count) { UNKNOWN_LENGTH }
+        private val bytesRead = LongArray(count)
+
+        @Synchronized
+        fun update(
+            index: Int,
+            read: Long,
+            contentLength: Long,
+        ): AttachmentDownloadEvent.Progress {
+            bytesRead[index] = read
+            contentLengths[index] = contentLength
+            val total = if (contentLengths.any { it < 0 }) UNKNOWN_LENGTH else contentLengths.sum()
+            return AttachmentDownloadEvent.Progress(index, read, contentLength, bytesRead.sum(), total)
+        }
+    }
+
+    /**
+     * Downloads [attachments] into [directory] and emits progress as it goes and a
+     * [AttachmentDownloadEvent.Completed] for each attachment. Progress events are skipped rather
+     * than slowing the downloads when the collector falls behind; completions are never skipped.
+     *
+     * The flow completes once every attachment is on disk. If one of them fails the others are
+     * cancelled and the flow throws; cancelling the collector cancels all downloads. Files of
+     * attachments that did not complete are deleted.
+     */
+    fun download(
+        attachments: List<RemoteAttachmentInfo>,
+        directory: File,
+    ): Flow<AttachmentDownloadEvent> =
+        channelFlow {
+            val permits = Semaphore(concurrency)
+            val totals = Totals(attachments.size)
+            attachments.forEachIndexed { index, info ->
+                launch(Dispatchers.IO) {
+                    permits.withPermit {
+                        val job = coroutineContext.job
+                        val listener =
+                            object : FetchListener {
+                                override fun onProgress(
+                                    bytesRead: Long,
+                                    contentLength: Long,
+                                ) {
+                                    job.ensureActive()
+                                    trySend(totals.update(index, bytesRead, contentLength))
+                                }
+
+                                override fun checkCancelled() = job.ensureActive()
+                            }
+                        val file =
+                            try {
+                                info
+                                    .toRemoteAttachment()
+                                    .loadAttachmentToFile(File(directory, fileName(index, info)), listener)
+                            } catch (e: IOException) {
+                                // A read that was blocked when the download got cancelled.
+                                ensureActive()
+                                throw e
+                            }
+                        send(AttachmentDownloadEvent.Completed(index, file))
+                    }
+                }
+            }
+        }
+
+    fun download(
+        attachment: MultiRemoteAttachment,
+        directory: File,
+    ): Flow<AttachmentDownloadEvent> = download(attachment.remoteAttachments, directory)
+
+    /**
+     * Downloads [attachments] into [directory] and returns them in their original order.
+     */
+    suspend fun loadAll(
+        attachments: List<RemoteAttachmentInfo>,
+        directory: File,
+    ): List<AttachmentFile> =
+        download(attachments, directory)
+            .filterIsInstance<AttachmentDownloadEvent.Completed>()
+            .toList()
+            .sortedBy { it.index }
+            .map { it.attachment }
+
+    private fun fileName(
+        index: Int,
+        info: RemoteAttachmentInfo,
+    ): String {
+        // Only the last path segment of the sender's filename is used, so it can't escape [directory].
+        val name = File(info.filename).name.ifEmpty { "attachment" }
+        return "$index-$name"
+    }
+
+    private fun RemoteAttachmentInfo.toRemoteAttachment(): RemoteAttachment =
+        RemoteAttachment(
+            url = URL(url),
+            contentDigest = contentDigest,
+            secret = secret,
+            salt = salt,
+            nonce = nonce,
+            scheme = scheme,
+            contentLength = contentLength.toInt(),
+            filename = filename,
+            fetcher = fetcher,
+            cache = cache,
+        )
+
+    companion object {
+        const val DEFAULT_CONCURRENCY = 4
+        private const val UNKNOWN_LENGTH = -1L
+    }
+}
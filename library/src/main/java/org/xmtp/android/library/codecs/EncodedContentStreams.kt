@@ -0,0 +1,65 @@
+package org.xmtp.android.library.codecs
+
+import com.google.protobuf.ByteString
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.CodedOutputStream
+import com.google.protobuf.WireFormat
+import org.xmtp.android.library.XMTPException
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.SequenceInputStream
+
+private const val COPY_CHUNK_SIZE = 64 * 1024
+private const val CONTENT_TAG = (EncodedContent.CONTENT_FIELD_NUMBER shl 3) or WireFormat.WIRETYPE_LENGTH_DELIMITED
+
+/**
+ * The serialized [EncodedContent] that [AttachmentCodec] produces for an attachment, with its
+ * [dataLength] bytes of data read from [data] as the stream is read rather than held in memory.
+ *
+ * Protobuf merges repeated serializations of a message, so this is the small encoded header
+ * followed by the content field written out by hand.
+ */
+internal fun encodedAttachmentStream(
+    filename: String,
+    mimeType: String,
+    data: InputStream,
+    dataLength: Long,
+): InputStream {
+    if (dataLength > Int.MAX_VALUE) throw XMTPException("attachment too large: $dataLength bytes")
+    val header = ByteString.newOutput()
+    val coded = CodedOutputStream.newInstance(header)
+    AttachmentCodec().encode(Attachment(filename, mimeType, ByteString.EMPTY)).writeTo(coded)
+    coded.writeTag(EncodedContent.CONTENT_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+    coded.writeUInt32NoTag(dataLength.toInt())
+    coded.flush()
+    return SequenceInputStream(header.toByteString().newInput(), data)
+}
+
+/**
+ * Reads a serialized [EncodedContent] from [input], copying its content bytes to [content] as
+ * they are read. Returns everything else, with empty content. Compressed content is copied as is.
+ */
+internal fun readEncodedContent(
+    input: InputStream,
+    content: OutputStream,
+): EncodedContent {
+    val coded = CodedInputStream.newInstance(input)
+    val header = ByteString.newOutput()
+    val headerOut = CodedOutputStream.newInstance(header)
+    while (true) {
+        val tag = coded.readTag()
+        if (tag == 0) break
+        if (tag == CONTENT_TAG) {
+            var remaining = coded.readRawVarint32()
+            while (remaining > 0) {
+                val chunk = coded.readRawBytes(minOf(remaining, COPY_CHUNK_SIZE))
+                content.write(chunk)
+                remaining -= chunk.size
+            }
+        } else {
+            coded.skipField(tag, headerOut)
+        }
+    }
+    headerOut.flush()
+    return EncodedContent.parseFrom(header.toByteString())
+}
@@ -0,0 +1,46 @@
+package org.xmtp.android.library.codecs
+
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonSyntaxException
+import com.google.gson.stream.JsonToken
+import com.google.protobuf.ByteString
+import java.io.InputStreamReader
+import java.io.OutputStreamWriter
+
+/**
+ * Shared JSON engine for codecs whose payload is JSON.
+ *
+ * A [Gson] instance is thread-safe but costly to build, so codecs reuse [gson] instead of creating
+ * one per message. Payloads are streamed directly to and from [ByteString]s, so the JSON text is
+ * never materialized as an intermediate [String].
+ */
+internal object JsonCodecs {
+    val gson: Gson =
+        GsonBuilder()
+            .registerTypeAdapter(Reaction::class.java, ReactionJsonAdapter)
+            .create()
+
+    fun <T> encode(
+        value: T,
+        type: Class<T>,
+    ): ByteString {
+        val output = ByteString.newOutput()
+        gson.newJsonWriter(OutputStreamWriter(output, Charsets.UTF_8)).use { writer ->
+            gson.getAdapter(type).write(writer, value)
+        }
+        return output.toByteString()
+    }
+
+    fun <T> decode(
+        content: ByteString,
+        type: Class<T>,
+    ): T {
+        val reader = gson.newJsonReader(InputStreamReader(content.newInput(), Charsets.UTF_8))
+        val value = gson.getAdapter(type).read(reader) ?: throw JsonSyntaxException("Empty JSON payload")
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw JsonSyntaxException("Unexpected data after JSON payload")
+        }
+        return value
+    }
+}
@@ -1,14 +1,9 @@
 package org.xmtp.android.library.codecs
 
-import com.google.gson.GsonBuilder
-import com.google.gson.JsonDeserializationContext
-import com.google.gson.JsonDeserializer
-import com.google.gson.JsonElement
-import com.google.gson.JsonObject
-import com.google.gson.JsonSerializationContext
-import com.google.gson.JsonSerializer
-import com.google.protobuf.kotlin.toByteStringUtf8
-import java.lang.reflect.Type
+import com.google.gson.JsonParseException
+import com.google.gson.TypeAdapter
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonWriter
 
 val ContentTypeReaction =
     ContentTypeIdBuilder.builderFromAuthorityId(
@@ -62,29 +57,17 @@ fun getReactionAction(action: String): ReactionAction =
 data class ReactionCodec(
     override var contentType: ContentTypeId = ContentTypeReaction,
 ) : ContentCodec<Reaction> {
-    override fun encode(content: Reaction): EncodedContent {
-        val gson =
-            GsonBuilder()
-                .registerTypeAdapter(Reaction::class.java, ReactionSerializer())
-                .create()
-
-        return EncodedContent
+    override fun encode(content: Reaction): EncodedContent =
+        EncodedContent
             .newBuilder()
             .also {
                 it.type = ContentTypeReaction
-                it.content = gson.toJson(content).toByteStringUtf8()
+                it.content = JsonCodecs.encode(content, Reaction::class.java)
             }.build()
-    }
 
     override fun decode(content: EncodedContent): Reaction {
-        val json = content.content.toStringUtf8()
-
-        val gson =
-            GsonBuilder()
-                .registerTypeAdapter(Reaction::class.java, ReactionDeserializer())
-                .create()
         try {
-            return gson.fromJson(json, Reaction::class.java)
+            return JsonCodecs.decode(content.content, Reaction::class.java)
         } catch (ignore: Exception) {
         }
 
@@ -93,7 +76,7 @@ data class ReactionCodec(
             reference = content.parametersMap["reference"] ?: "",
             action = getReactionAction(content.parametersMap["action"]?.lowercase() ?: ""),
             schema = getReactionSchema(content.parametersMap["schema"]?.lowercase() ?: ""),
-            content = json,
+            content = content.content.toStringUtf8(),
         )
     }
 
@@ -107,44 +90,62 @@ data class ReactionCodec(
     override fun shouldPush(content: Reaction): Boolean = false
 }
 
-private class ReactionSerializer : JsonSerializer<Reaction> {
-    override fun serialize(
-        src: Reaction,
-        typeOfSrc: Type,
-        context: JsonSerializationContext,
-    ): JsonObject {
-        val json = JsonObject()
-        json.addProperty("reference", src.reference)
-        json.addProperty(
-            "action",
-            src.action.javaClass.simpleName
-                .lowercase(),
+/**
+ * Streams a [Reaction] as `{"reference", "action", "content", "schema"}` without building a JSON
+ * tree. Registered on [JsonCodecs.gson].
+ */
+internal object ReactionJsonAdapter : TypeAdapter<Reaction>() {
+    override fun write(
+        out: JsonWriter,
+        value: Reaction?,
+    ) {
+        if (value == null) {
+            out.nullValue()
+            return
+        }
+        out.beginObject()
+        out.name("reference").value(value.reference)
+        out.name("action").value(
+            when (value.action) {
+                ReactionAction.Added -> "added"
+                ReactionAction.Removed -> "removed"
+                ReactionAction.Unknown -> "unknown"
+            },
         )
-        json.addProperty("content", src.content)
-        json.addProperty(
-            "schema",
-            src.schema.javaClass.simpleName
-                .lowercase(),
+        out.name("content").value(value.content)
+        out.name("schema").value(
+            when (value.schema) {
+                ReactionSchema.Unicode -> "unicode"
+                ReactionSchema.Shortcode -> "shortcode"
+                ReactionSchema.Custom -> "custom"
+                ReactionSchema.Unknown -> "unknown"
+            },
         )
-        return json
+        out.endObject()
     }
-}
 
-private class ReactionDeserializer : JsonDeserializer<Reaction> {
-    override fun deserialize(
-        json: JsonElement,
-        typeOfT: Type?,
-        context: JsonDeserializationContext?,
-    ): Reaction {
-        val jsonObject = json.asJsonObject
-        val reference = jsonObject.get("reference").asString
-        val actionStr = jsonObject.get("action").asString.lowercase()
-        val content = jsonObject.get("content").asString
-        val schemaStr = jsonObject.get("schema").asString.lowercase()
-
-        val action = getReactionAction(actionStr)
-        val schema = getReactionSchema(schemaStr)
-
-        return Reaction(reference, action, content, schema)
+    override fun read(reader: JsonReader): Reaction {
+        var reference: String? = null
+        var action: String? = null
+        var content: String? = null
+        var schema: String? = null
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "reference" -> reference = reader.nextString()
+                "action" -> action = reader.nextString()
+                "content" -> content = reader.nextString()
+                "schema" -> schema = reader.nextString()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        return Reaction(
+            reference = reference ?: throw JsonParseException("missing reference"),
+            action = getReactionAction(action?.lowercase() ?: throw JsonParseException("missing action")),
+            content = content ?: throw JsonParseException("missing content"),
+            schema = getReactionSchema(schema?.lowercase() ?: throw JsonParseException("missing schema")),
+        )
     }
 }
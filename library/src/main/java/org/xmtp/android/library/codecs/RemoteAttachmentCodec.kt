@@ -1,17 +1,29 @@
 package org.xmtp.android.library.codecs
 
 import com.google.protobuf.ByteString
+import com.google.protobuf.UnsafeByteOperations
 import com.google.protobuf.kotlin.toByteString
 import com.google.protobuf.kotlin.toByteStringUtf8
-import org.web3j.crypto.Hash
-import org.web3j.utils.Numeric
 import org.xmtp.android.library.Crypto
+import org.xmtp.android.library.EncodedContentCompression
 import org.xmtp.android.library.XMTPException
+import org.xmtp.android.library.hexToByteArray
 import org.xmtp.android.library.toHex
-import org.xmtp.proto.message.contents.CiphertextOuterClass.Ciphertext
+import org.xmtp.proto.message.contents.Content
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.HttpURLConnection
 import java.net.URI
 import java.net.URL
-import java.security.SecureRandom
+import java.net.URLConnection
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import kotlin.random.Random
 
 data class EncryptedEncodedContent(
     val contentDigest: String,
@@ -23,6 +35,28 @@ data class EncryptedEncodedContent(
     val filename: String? = null,
 )
 
+/**
+ * Describes a payload encrypted by [RemoteAttachment.encodeEncryptedStream]. The payload itself
+ * was written to an output stream rather than kept here.
+ */
+data class EncryptedEncodedStream(
+    val contentDigest: String,
+    val secret: ByteString,
+    val salt: ByteString,
+    val nonce: ByteString,
+    val payloadLength: Long,
+    val filename: String? = null,
+)
+
+/**
+ * An attachment whose data was written to [file] instead of being loaded into memory.
+ */
+data class AttachmentFile(
+    val filename: String,
+    val mimeType: String,
+    val file: File,
+)
+
 data class RemoteAttachment(
     val url: URL,
     val contentDigest: String,
@@ -33,9 +67,23 @@ data class RemoteAttachment(
     var contentLength: Int? = null,
     var filename: String? = null,
     var fetcher: Fetcher = HTTPFetcher(),
+    var cache: AttachmentCache? = null,
 ) {
+    /**
+     * The most an honest payload for [contentLength] bytes of content can take up: the encoded
+     * content's header, the GCM tag and deflate's worst case are all well within the slack. Null
+     * when the sender did not say how long the content is.
+     */
+    internal val maxPayloadBytes: Long?
+        get() =
+            contentLength?.takeIf { it > 0 }?.toLong()?.let {
+                it + it / PAYLOAD_OVERHEAD_RATIO + PAYLOAD_OVERHEAD_BYTES
+            }
+
     fun <T> load(): T? {
-        val payload = fetcher.fetch(url)
+        val cache = cache
+        cache?.content(contentDigest, secret, salt, nonce)?.let { return it.decoded<T>() }
+        val payload = cache?.payload(contentDigest) ?: fetcher.fetch(url, maxPayloadBytes)
 
         if (payload.isEmpty()) {
             throw XMTPException("no remote attachment payload")
@@ -47,54 +95,156 @@ data class RemoteAttachment(
                 secret,
                 salt,
                 nonce,
-                payload.toByteString(),
+                // The fetched array is not modified, so it needn't be copied.
+                UnsafeByteOperations.unsafeWrap(payload),
                 contentLength,
                 filename,
             )
 
         val decrypted = decryptEncoded(encrypted)
+        cache?.put(contentDigest, secret, salt, nonce, payload, decrypted)
 
         return decrypted.decoded<T>()
     }
 
+    /**
+     * Streaming counterpart of [load] for [Attachment] content. The payload is decrypted and
+     * checked against [contentDigest] as it is read, and the attachment's data is written to
+     * [destination]; none of it is held in memory. A [StreamingFetcher] downloads the payload to a
+     * temporary file next to [destination] first, since it may be retried part way through; any
+     * other [fetcher] returns it in memory. With a [cache], a payload already on disk is read from
+     * there instead of downloading it, and a downloaded one is kept there.
+     *
+     * @param listener Receives the progress of the download from a [StreamingFetcher].
+     * @throws XMTPException if the payload is missing, does not match its digest or is not an
+     * attachment. [destination] is deleted in that case.
+     */
+    fun loadAttachmentToFile(
+        destination: File,
+        listener: FetchListener? = null,
+    ): AttachmentFile {
+        try {
+            val cache = cache
+            val encoded =
+                cache?.readPayload(contentDigest) { input, size ->
+                    listener?.onProgress(size, size)
+                    extractAttachment(input, destination)
+                } ?: fetchAttachment(destination, listener)
+            val attachment = AttachmentCodec().decode(encoded)
+
+            val compression =
+                when (encoded.compression) {
+                    Content.Compression.COMPRESSION_DEFLATE -> EncodedContentCompression.DEFLATE
+                    Content.Compression.COMPRESSION_GZIP -> EncodedContentCompression.GZIP
+                    else -> null
+                }
+            // The compression comes after the content in the encoded message, so the content can
+            // only be inflated once it is on disk.
+            if (compression != null) {
+                val inflated = File.createTempFile("attachment", ".content", destination.absoluteFile.parentFile)
+                try {
+                    compression.decompressing(destination.inputStream().buffered()).use { input ->
+                        inflated.outputStream().buffered().use { input.copyTo(it) }
+                    }
+                    Files.move(inflated.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING)
+                } finally {
+                    inflated.delete()
+                }
+            }
+            return AttachmentFile(attachment.filename, attachment.mimeType, destination)
+        } catch (e: Exception) {
+            destination.delete()
+            throw e
+        }
+    }
+
+    // Fetches the payload and extracts it with [extractAttachment], caching it once it checks out.
+    private fun fetchAttachment(
+        destination: File,
+        listener: FetchListener?,
+    ): EncodedContent {
+        val source = fetcher
+        if (source !is StreamingFetcher) {
+            val payload = source.fetch(url, maxPayloadBytes)
+            if (payload.isEmpty()) {
+                throw XMTPException("no remote attachment payload")
+            }
+            return extractAttachment(payload.inputStream(), destination).also {
+                cache?.putPayload(contentDigest, payload)
+            }
+        }
+        val payload = File.createTempFile("attachment", ".payload", destination.absoluteFile.parentFile)
+        try {
+            source.fetch(url, payload, maxPayloadBytes, listener)
+            if (payload.length() == 0L) {
+                throw XMTPException("no remote attachment payload")
+            }
+            return payload.inputStream().buffered().use { extractAttachment(it, destination) }.also {
+                cache?.putPayload(contentDigest, payload)
+            }
+        } finally {
+            payload.delete()
+        }
+    }
+
+    // Decrypts the payload read from [input] and writes the content of the encoded attachment,
+    // still compressed if it was sent that way, to [destination]. Returns the rest of the encoded
+    // content once the payload has checked out.
+    private fun extractAttachment(
+        input: InputStream,
+        destination: File,
+    ): EncodedContent {
+        val decrypting = Crypto.decryptingStream(secret.toByteArray(), salt.toByteArray(), nonce.toByteArray(), input)
+        val encoded = destination.outputStream().buffered().use { readEncodedContent(decrypting, it) }
+        if (decrypting.digest.toHex() != contentDigest) {
+            throw XMTPException("contentDigest does not match")
+        }
+        if (encoded.type.authorityId != ContentTypeAttachment.authorityId ||
+            encoded.type.typeId != ContentTypeAttachment.typeId
+        ) {
+            throw XMTPException("remote content is not an attachment")
+        }
+        return encoded
+    }
+
     companion object {
+        private const val PAYLOAD_OVERHEAD_BYTES = 64 * 1024L
+        private const val PAYLOAD_OVERHEAD_RATIO = 1_000
+
         fun decryptEncoded(encrypted: EncryptedEncodedContent): EncodedContent {
-            if (Hash.sha256(encrypted.payload.toByteArray()).toHex() != encrypted.contentDigest) {
+            // Hash and decrypt the payload where it is rather than copying it out of the ByteString.
+            if (sha256Hex(encrypted.payload) != encrypted.contentDigest) {
                 throw XMTPException("contentDigest does not match")
             }
 
-            val aes =
-                Ciphertext.Aes256gcmHkdfsha256
-                    .newBuilder()
-                    .also {
-                        it.hkdfSalt = encrypted.salt
-                        it.gcmNonce = encrypted.nonce
-                        it.payload = encrypted.payload
-                    }.build()
-
-            val ciphertext =
-                Ciphertext
-                    .newBuilder()
-                    .also {
-                        it.aes256GcmHkdfSha256 = aes
-                    }.build()
-
-            val decrypted = Crypto.decrypt(encrypted.secret.toByteArray(), ciphertext)
+            val decrypted =
+                Crypto.decrypt(
+                    encrypted.secret.toByteArray(),
+                    encrypted.salt.toByteArray(),
+                    encrypted.nonce.toByteArray(),
+                    encrypted.payload.asReadOnlyByteBuffer(),
+                ) ?: throw XMTPException("unable to decrypt remote attachment payload")
 
             return EncodedContent.parseFrom(decrypted)
         }
 
+        private fun sha256Hex(payload: ByteString): String =
+            MessageDigest
+                .getInstance("SHA-256")
+                .apply { update(payload.asReadOnlyByteBuffer()) }
+                .digest()
+                .toHex()
+
         fun <T> encodeEncrypted(
             content: T,
             codec: ContentCodec<T>,
         ): EncryptedEncodedContent {
-            val secret = SecureRandom().generateSeed(32)
+            val secret = Crypto.randomBytes(32)
             val encodedContent = codec.encode(content).toByteArray()
             val ciphertext =
                 Crypto.encrypt(secret, encodedContent)
                     ?: throw XMTPException("ciphertext not created")
-            val contentDigest =
-                Hash.sha256(ciphertext.aes256GcmHkdfSha256.payload.toByteArray()).toHex()
+            val contentDigest = sha256Hex(ciphertext.aes256GcmHkdfSha256.payload)
             return EncryptedEncodedContent(
                 contentDigest = contentDigest,
                 secret = secret.toByteString(),
@@ -110,12 +260,11 @@ data class RemoteAttachment(
             encodedContent: ByteArray,
             filename: String,
         ): EncryptedEncodedContent {
-            val secret = SecureRandom().generateSeed(32)
+            val secret = Crypto.randomBytes(32)
             val ciphertext =
                 Crypto.encrypt(secret, encodedContent)
                     ?: throw XMTPException("ciphertext not created")
-            val contentDigest =
-                Hash.sha256(ciphertext.aes256GcmHkdfSha256.payload.toByteArray()).toHex()
+            val contentDigest = sha256Hex(ciphertext.aes256GcmHkdfSha256.payload)
             return EncryptedEncodedContent(
                 contentDigest = contentDigest,
                 secret = secret.toByteString(),
@@ -127,6 +276,67 @@ data class RemoteAttachment(
             )
         }
 
+        /**
+         * Streaming counterpart of [encodeEncryptedBytes]: encrypts a serialized [EncodedContent]
+         * read from [encodedContent] and writes the payload to [output], computing its digest in
+         * the same pass. Neither stream is closed.
+         */
+        fun encodeEncryptedStream(
+            encodedContent: InputStream,
+            output: OutputStream,
+            filename: String? = null,
+        ): EncryptedEncodedStream {
+            val secret = Crypto.randomBytes(32)
+            val ciphertext = Crypto.encryptStream(secret, encodedContent, output)
+            return EncryptedEncodedStream(
+                contentDigest = ciphertext.payloadSha256.toHex(),
+                secret = secret.toByteString(),
+                salt = ciphertext.salt.toByteString(),
+                nonce = ciphertext.nonce.toByteString(),
+                payloadLength = ciphertext.payloadLength,
+                filename = filename,
+            )
+        }
+
+        /**
+         * Encrypts [source] as [Attachment] content and writes the payload to [destination]
+         * without reading the file into memory. Upload [destination], then pass the result to
+         * [from] with the URL it was uploaded to.
+         */
+        fun encodeEncryptedAttachmentFile(
+            source: File,
+            mimeType: String,
+            destination: File,
+            filename: String = source.name,
+        ): EncryptedEncodedStream =
+            encodedAttachmentStream(filename, mimeType, source.inputStream().buffered(), source.length()).use { input ->
+                destination.outputStream().buffered().use { output ->
+                    encodeEncryptedStream(input, output, filename)
+                }
+            }
+
+        fun from(
+            url: URL,
+            encryptedEncodedStream: EncryptedEncodedStream,
+        ): RemoteAttachment =
+            from(
+                url,
+                EncryptedEncodedContent(
+                    contentDigest = encryptedEncodedStream.contentDigest,
+                    secret = encryptedEncodedStream.secret,
+                    salt = encryptedEncodedStream.salt,
+                    nonce = encryptedEncodedStream.nonce,
+                    payload = ByteString.EMPTY,
+                    filename = encryptedEncodedStream.filename,
+                ),
+            ).also { remoteAttachment ->
+                // The encrypted length stands in for the attachment size; the payload size limit
+                // leaves room for the difference.
+                remoteAttachment.contentLength =
+                    encryptedEncodedStream.payloadLength.takeIf { it <= Int.MAX_VALUE }?.toInt()
+                remoteAttachment.filename = encryptedEncodedStream.filename
+            }
+
         fun from(
             url: URL,
             encryptedEncodedContent: EncryptedEncodedContent,
@@ -157,10 +367,308 @@ val ContentTypeRemoteAttachment =
 
 interface Fetcher {
     fun fetch(url: URL): ByteArray
+
+    /**
+     * Like [fetch], but throws [XMTPException] rather than return more than [maxBytes]. By default
+     * the size is checked once the payload is in memory; implementations that can should stop
+     * reading at the limit.
+     */
+    fun fetch(
+        url: URL,
+        maxBytes: Long?,
+    ): ByteArray = fetch(url).also { checkPayloadSize(it.size.toLong(), maxBytes) }
+}
+
+/**
+ * Receives the progress of a [StreamingFetcher] download.
+ */
+fun interface FetchListener {
+    /**
+     * Called with the bytes written so far and the payload's content length, or -1 if unknown.
+     */
+    fun onProgress(
+        bytesRead: Long,
+        contentLength: Long,
+    )
+
+    /**
+     * Called before every request and while waiting to retry one; throw, for example a
+     * `CancellationException`, to give up on the download.
+     */
+    fun checkCancelled() {}
 }
 
-class HTTPFetcher : Fetcher {
-    override fun fetch(url: URL): ByteArray = url.readBytes()
+/**
+ * A [Fetcher] that can also write what it fetches straight to a file, for payloads too large
+ * to hold in memory.
+ */
+interface StreamingFetcher : Fetcher {
+    fun fetch(
+        url: URL,
+        destination: File,
+    )
+
+    /**
+     * Like [fetch], but throws [XMTPException] rather than keep more than [maxBytes].
+     */
+    fun fetch(
+        url: URL,
+        destination: File,
+        maxBytes: Long?,
+    ) = fetch(url, destination, maxBytes, listener = null)
+
+    /**
+     * Like [fetch], but throws [XMTPException] rather than keep more than [maxBytes], and reports
+     * progress to [listener]. By default the size is checked and progress reported once the
+     * download is done; implementations that can should do both as bytes arrive.
+     */
+    fun fetch(
+        url: URL,
+        destination: File,
+        maxBytes: Long?,
+        listener: FetchListener?,
+    ) {
+        listener?.checkCancelled()
+        fetch(url, destination)
+        val length = destination.length()
+        checkPayloadSize(length, maxBytes)
+        listener?.onProgress(length, length)
+    }
+}
+
+private fun checkPayloadSize(
+    size: Long,
+    maxBytes: Long?,
+) {
+    if (maxBytes != null && size > maxBytes) {
+        throw XMTPException("remote attachment payload is larger than $maxBytes bytes")
+    }
+}
+
+/**
+ * Fetches over `HttpURLConnection`. Responses are always read to the end and closed, which lets
+ * the platform keep the connection alive and reuse it for the next request to the same host.
+ *
+ * Failed requests are retried up to [maxRetries] times after a jittered, exponentially growing
+ * delay: I/O errors, timeouts and 408, 429 and 5xx responses count as failures, other responses
+ * don't. If the connection drops partway through a response, the retry asks for the rest with a
+ * `Range` request and keeps what was already downloaded; a server that doesn't support ranges
+ * sends everything again. A retry that makes progress starts the count over, but no download
+ * makes more than [maxAttempts] requests in all. A [FetchListener] can cancel a download before
+ * any request and while waiting to retry.
+ *
+ * @param maxBytes Upper bound for any payload, in addition to the limit passed per fetch.
+ */
+class HTTPFetcher(
+    val connectTimeoutMs: Int = DEFAULT_CONNECT_TIMEOUT_MS,
+    val readTimeoutMs: Int = DEFAULT_READ_TIMEOUT_MS,
+    val maxRetries: Int = DEFAULT_MAX_RETRIES,
+    val maxAttempts: Int = DEFAULT_MAX_ATTEMPTS,
+    val initialBackoffMs: Long = DEFAULT_INITIAL_BACKOFF_MS,
+    val maxBackoffMs: Long = DEFAULT_MAX_BACKOFF_MS,
+    val maxBytes: Long? = null,
+) : StreamingFetcher {
+    init {
+        require(maxRetries >= 0) { "maxRetries must not be negative" }
+        require(maxAttempts > 0) { "maxAttempts must be greater than 0" }
+    }
+
+    private class RetryableStatusException(
+        status: Int,
+        val retryAfterMs: Long?,
+    ) : IOException("HTTP $status")
+
+    private class Transfer(
+        val limit: Long,
+    ) {
+        var bytesRead = 0L
+        var contentLength = UNKNOWN_LENGTH
+        var validator: String? = null
+    }
+
+    override fun fetch(url: URL): ByteArray = fetch(url, maxBytes = null)
+
+    override fun fetch(
+        url: URL,
+        maxBytes: Long?,
+    ): ByteArray {
+        val buffer = ByteArrayOutputStream()
+        download(url, maxBytes, { append -> buffer.also { if (!append) it.reset() } }, listener = null)
+        return buffer.toByteArray()
+    }
+
+    override fun fetch(
+        url: URL,
+        destination: File,
+    ) = fetch(url, destination, maxBytes = null)
+
+    /**
+     * Resumed downloads append to [destination]. [listener] is called once a response starts and
+     * after every chunk.
+     */
+    override fun fetch(
+        url: URL,
+        destination: File,
+        maxBytes: Long?,
+        listener: FetchListener?,
+    ) = download(url, maxBytes, { append -> FileOutputStream(destination, append) }, listener)
+
+    private fun download(
+        url: URL,
+        maxBytes: Long?,
+        openOutput: (append: Boolean) -> OutputStream,
+        listener: FetchListener?,
+    ) {
+        val transfer = Transfer(listOfNotNull(maxBytes, this.maxBytes).minOrNull() ?: Long.MAX_VALUE)
+        var failures = 0
+        var attempts = 0
+        while (true) {
+            listener?.checkCancelled()
+            val bytesBefore = transfer.bytesRead
+            try {
+                attempts++
+                attempt(url, transfer, openOutput, listener)
+                return
+            } catch (e: IOException) {
+                if (transfer.bytesRead > bytesBefore) failures = 0
+                if (failures >= maxRetries || attempts >= maxAttempts) throw e
+                pause(backoffMs(failures++, (e as? RetryableStatusException)?.retryAfterMs), listener)
+            }
+        }
+    }
+
+    // Sleeps for [delayMs], checking for cancellation at short intervals.
+    private fun pause(
+        delayMs: Long,
+        listener: FetchListener?,
+    ) {
+        var remainingMs = delayMs
+        while (remainingMs > 0) {
+            listener?.checkCancelled()
+            val sliceMs = minOf(remainingMs, CANCELLATION_CHECK_INTERVAL_MS)
+            Thread.sleep(sliceMs)
+            remainingMs -= sliceMs
+        }
+    }
+
+    private fun attempt(
+        url: URL,
+        transfer: Transfer,
+        openOutput: (append: Boolean) -> OutputStream,
+        listener: FetchListener?,
+    ) {
+        val connection = open(url)
+        val http = connection as? HttpURLConnection
+        try {
+            val resumeFrom = if (http != null) transfer.bytesRead else 0L
+            if (resumeFrom > 0) {
+                connection.setRequestProperty("Range", "bytes=$resumeFrom-")
+                transfer.validator?.let { connection.setRequestProperty("If-Range", it) }
+            }
+            val status = http?.responseCode ?: HttpURLConnection.HTTP_OK
+            val range = if (status == HttpURLConnection.HTTP_PARTIAL) contentRange(connection) else null
+            val resumed = resumeFrom > 0 && range?.first == resumeFrom
+            when {
+                resumed -> {
+                    transfer.contentLength =
+                        range?.second?.takeIf { it >= 0 }
+                            ?: connection.contentLengthLong.takeIf { it >= 0 }?.plus(resumeFrom)
+                            ?: UNKNOWN_LENGTH
+                }
+
+                status == HttpURLConnection.HTTP_OK -> {
+                    transfer.bytesRead = 0
+                    transfer.contentLength = connection.contentLengthLong
+                    // Only resume from the same version of the file.
+                    transfer.validator =
+                        connection.getHeaderField("ETag")?.takeUnless { it.startsWith("W/") }
+                            ?: connection.getHeaderField("Last-Modified")
+                }
+
+                status == HttpURLConnection.HTTP_PARTIAL || status == HTTP_RANGE_NOT_SATISFIABLE -> {
+                    // Not the range that was asked for; start over.
+                    transfer.bytesRead = 0
+                    transfer.validator = null
+                    throw IOException("unexpected range in response: HTTP $status")
+                }
+
+                status in RETRYABLE_STATUSES || status >= HttpURLConnection.HTTP_INTERNAL_ERROR -> {
+                    val retryAfterMs = connection.getHeaderField("Retry-After")?.toLongOrNull()?.times(1_000)
+                    throw RetryableStatusException(status, retryAfterMs)
+                }
+
+                else -> throw XMTPException("remote attachment fetch failed: HTTP $status")
+            }
+            if (transfer.contentLength > transfer.limit) {
+                throw XMTPException("remote attachment payload is larger than ${transfer.limit} bytes")
+            }
+
+            listener?.onProgress(transfer.bytesRead, transfer.contentLength)
+            connection.getInputStream().use { input ->
+                openOutput(resumed).use { output ->
+                    val buffer = ByteArray(BUFFER_SIZE)
+                    while (true) {
+                        val read = input.read(buffer)
+                        if (read < 0) break
+                        if (transfer.bytesRead + read > transfer.limit) {
+                            throw XMTPException("remote attachment payload is larger than ${transfer.limit} bytes")
+                        }
+                        output.write(buffer, 0, read)
+                        transfer.bytesRead += read
+                        listener?.onProgress(transfer.bytesRead, transfer.contentLength)
+                    }
+                }
+            }
+            if (transfer.contentLength >= 0 && transfer.bytesRead < transfer.contentLength) {
+                throw IOException("connection closed after ${transfer.bytesRead} of ${transfer.contentLength} bytes")
+            }
+        } catch (e: Exception) {
+            // The response was not read to the end, so the connection can't be reused.
+            http?.disconnect()
+            throw e
+        }
+    }
+
+    private fun open(url: URL): URLConnection =
+        url.openConnection().apply {
+            connectTimeout = connectTimeoutMs
+            readTimeout = readTimeoutMs
+        }
+
+    // The start and total length of a `Content-Range: bytes start-end/total` header, with -1 for
+    // an unknown total.
+    private fun contentRange(connection: URLConnection): Pair<Long, Long>? {
+        val value = connection.getHeaderField("Content-Range")?.removePrefix("bytes ") ?: return null
+        val start = value.substringBefore('-').trim().toLongOrNull() ?: return null
+        val total = value.substringAfter('/', "").trim().toLongOrNull() ?: UNKNOWN_LENGTH
+        return start to total
+    }
+
+    private fun backoffMs(
+        failures: Int,
+        retryAfterMs: Long?,
+    ): Long {
+        val ceiling = minOf(maxBackoffMs, initialBackoffMs shl minOf(failures, MAX_BACKOFF_SHIFT))
+        // Half fixed and half random, so clients that failed together don't retry together.
+        val delay = ceiling / 2 + Random.nextLong(ceiling / 2 + 1)
+        return maxOf(delay, minOf(retryAfterMs ?: 0, maxBackoffMs))
+    }
+
+    companion object {
+        const val DEFAULT_CONNECT_TIMEOUT_MS = 15_000
+        const val DEFAULT_READ_TIMEOUT_MS = 30_000
+        const val DEFAULT_MAX_RETRIES = 3
+        const val DEFAULT_MAX_ATTEMPTS = 20
+        const val DEFAULT_INITIAL_BACKOFF_MS = 500L
+        const val DEFAULT_MAX_BACKOFF_MS = 10_000L
+        private const val BUFFER_SIZE = 64 * 1024
+        private const val UNKNOWN_LENGTH = -1L
+        private const val MAX_BACKOFF_SHIFT = 20
+        private const val CANCELLATION_CHECK_INTERVAL_MS = 50L
+        private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private val RETRYABLE_STATUSES = setOf(HttpURLConnection.HTTP_CLIENT_TIMEOUT, HTTP_TOO_MANY_REQUESTS)
+    }
 }
 
 data class RemoteAttachmentCodec(
@@ -200,9 +708,9 @@ data class RemoteAttachmentCodec(
         return RemoteAttachment(
             url = URL(encodedContent.toStringUtf8()),
             contentDigest = contentDigest,
-            secret = Numeric.hexStringToByteArray(secret).toByteString(),
-            salt = Numeric.hexStringToByteArray(salt).toByteString(),
-            nonce = Numeric.hexStringToByteArray(nonce).toByteString(),
+            secret = secret.hexToByteArray().toByteString(),
+            salt = salt.hexToByteArray().toByteString(),
+            nonce = nonce.hexToByteArray().toByteString(),
             scheme = scheme,
             contentLength = contentLength.toInt(),
             filename = filename,
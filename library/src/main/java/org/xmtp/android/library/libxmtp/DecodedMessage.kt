@@ -1,12 +1,17 @@
 package org.xmtp.android.library.libxmtp
 
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.InvalidProtocolBufferException
+import com.google.protobuf.WireFormat
+import org.xmtp.android.library.ConversationId
 import org.xmtp.android.library.InboxId
+import org.xmtp.android.library.MessageId
 import org.xmtp.android.library.Topic
 import org.xmtp.android.library.XMTPException
 import org.xmtp.android.library.codecs.ContentTypeGroupUpdated
+import org.xmtp.android.library.codecs.ContentTypeId
 import org.xmtp.android.library.codecs.EncodedContent
 import org.xmtp.android.library.codecs.decoded
-import org.xmtp.android.library.toHex
 import org.xmtp.proto.message.contents.Content
 import uniffi.xmtpv3.FfiConversationMessageKind
 import uniffi.xmtpv3.FfiDeliveryStatus
@@ -16,8 +21,7 @@ import java.util.Date
 
 class DecodedMessage private constructor(
     private val libXMTPMessage: FfiMessage,
-    val encodedContent: Content.EncodedContent,
-    private val decodedContent: Any?,
+    val contentType: ContentTypeId,
     val childMessages: List<DecodedMessage>? = null,
 ) {
     enum class MessageDeliveryStatus {
@@ -37,11 +41,17 @@ class DecodedMessage private constructor(
         INSERTED_TIME,
     }
 
+    val messageId: MessageId by lazy(LazyThreadSafetyMode.PUBLICATION) { MessageId(libXMTPMessage.id) }
+
+    val typedConversationId: ConversationId by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        ConversationId(libXMTPMessage.conversationId)
+    }
+
     val id: String
-        get() = libXMTPMessage.id.toHex()
+        get() = messageId.hex
 
     val conversationId: String
-        get() = libXMTPMessage.conversationId.toHex()
+        get() = typedConversationId.hex
 
     val senderInboxId: InboxId
         get() = libXMTPMessage.senderInboxId
@@ -75,6 +85,29 @@ class DecodedMessage private constructor(
     val topic: String
         get() = Topic.groupMessage(conversationId).description
 
+    // Parsing and decoding are deferred until the content is first read, since many callers
+    // only look at the metadata above. create() has already checked the wire format, so this only
+    // fails on payloads that are well-formed but invalid, such as a string that isn't UTF-8; those
+    // read as empty content of the message's type rather than throwing from body or fallback.
+    val encodedContent: Content.EncodedContent by lazy {
+        try {
+            EncodedContent.parseFrom(libXMTPMessage.content)
+        } catch (e: InvalidProtocolBufferException) {
+            EncodedContent.newBuilder().setType(contentType).build()
+        }
+    }
+
+    private val decodedContent: Any? by lazy {
+        try {
+            encodedContent.decoded<Any>()
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    /**
+     * The decoded content, or null if it is not of type [T] or could not be decoded.
+     */
     @Suppress("UNCHECKED_CAST")
     fun <T> content(): T? = decodedContent as? T
 
@@ -89,43 +122,50 @@ class DecodedMessage private constructor(
     companion object {
         fun create(libXMTPMessage: FfiMessage): DecodedMessage? =
             try {
-                val encodedContent = EncodedContent.parseFrom(libXMTPMessage.content)
-                if (encodedContent.type == ContentTypeGroupUpdated &&
-                    libXMTPMessage.kind != FfiConversationMessageKind.MEMBERSHIP_CHANGE
-                ) {
-                    throw XMTPException("Error decoding group membership change")
-                }
-                // Decode the content once during creation
-                val decodedContent = encodedContent.decoded<Any>()
-                DecodedMessage(libXMTPMessage, encodedContent, decodedContent)
+                DecodedMessage(libXMTPMessage, validatedContentType(libXMTPMessage))
             } catch (e: Exception) {
-                null // Return null if decoding fails
+                null // Return null if the message is malformed
             }
 
         fun create(libXMTPMessageWithReactions: FfiMessageWithReactions): DecodedMessage? =
             try {
-                val encodedContent =
-                    EncodedContent.parseFrom(libXMTPMessageWithReactions.message.content)
-                if (encodedContent.type == ContentTypeGroupUpdated &&
-                    libXMTPMessageWithReactions.message.kind != FfiConversationMessageKind.MEMBERSHIP_CHANGE
-                ) {
-                    throw XMTPException("Error decoding group membership change")
-                }
-                // Decode the content once during creation
-                val decodedContent = encodedContent.decoded<Any>()
-
+                val message = libXMTPMessageWithReactions.message
                 // Convert reactions to Message objects
                 val reactionMessages =
                     libXMTPMessageWithReactions.reactions.mapNotNull { create(it) }
 
-                DecodedMessage(
-                    libXMTPMessageWithReactions.message,
-                    encodedContent,
-                    decodedContent,
-                    reactionMessages,
-                )
+                DecodedMessage(message, validatedContentType(message), reactionMessages)
             } catch (e: Exception) {
-                null // Return null if decoding fails
+                null // Return null if the message is malformed
             }
+
+        private fun validatedContentType(libXMTPMessage: FfiMessage): ContentTypeId {
+            val contentType = readContentType(libXMTPMessage.content)
+            if (contentType == ContentTypeGroupUpdated &&
+                libXMTPMessage.kind != FfiConversationMessageKind.MEMBERSHIP_CHANGE
+            ) {
+                throw XMTPException("Error decoding group membership change")
+            }
+            return contentType
+        }
+
+        /**
+         * Reads the `type` field of a serialized [EncodedContent] and checks the wire format of
+         * the rest, skipping over the payload without copying or decoding it.
+         */
+        internal fun readContentType(encodedContent: ByteArray): ContentTypeId {
+            val input = CodedInputStream.newInstance(encodedContent)
+            var contentType: ContentTypeId? = null
+            while (true) {
+                val tag = input.readTag()
+                if (tag == 0) break
+                if (WireFormat.getTagFieldNumber(tag) == EncodedContent.TYPE_FIELD_NUMBER) {
+                    contentType = ContentTypeId.parseFrom(input.readBytes())
+                } else {
+                    input.skipField(tag)
+                }
+            }
+            return contentType ?: throw XMTPException("Encoded content has no content type")
+        }
     }
 }
@@ -2,7 +2,9 @@ package org.xmtp.android.library.libxmtp
 
 import android.util.Log
 import com.google.protobuf.kotlin.toByteString
+import org.xmtp.android.library.ConversationId
 import org.xmtp.android.library.InboxId
+import org.xmtp.android.library.MessageId
 import org.xmtp.android.library.codecs.Attachment
 import org.xmtp.android.library.codecs.ContentTypeId
 import org.xmtp.android.library.codecs.ContentTypeIdBuilder
@@ -19,7 +21,6 @@ import org.xmtp.android.library.codecs.RemoteAttachmentInfo
 import org.xmtp.android.library.codecs.TransactionReference
 import org.xmtp.android.library.codecs.decoded
 import org.xmtp.android.library.codecs.encodedContentFromFfi
-import org.xmtp.android.library.toHex
 import uniffi.xmtpv3.FfiAttachment
 import uniffi.xmtpv3.FfiDecodedMessage
 import uniffi.xmtpv3.FfiDecodedMessageBody
@@ -45,11 +46,15 @@ import java.util.Date
 class DecodedMessageV2 private constructor(
     private val libXMTPMessage: FfiDecodedMessage,
 ) {
+    val messageId: MessageId by lazy { MessageId(libXMTPMessage.id()) }
+
+    val typedConversationId: ConversationId by lazy { ConversationId(libXMTPMessage.conversationId()) }
+
     val id: String
-        get() = libXMTPMessage.id().toHex()
+        get() = messageId.hex
 
     val conversationId: String
-        get() = libXMTPMessage.conversationId().toHex()
+        get() = typedConversationId.hex
 
     val senderInboxId: InboxId
         get() = libXMTPMessage.senderInboxId()
@@ -77,8 +82,7 @@ class DecodedMessageV2 private constructor(
                 FfiDeliveryStatus.FAILED -> DecodedMessage.MessageDeliveryStatus.FAILED
             }
 
-    val reactions: List<DecodedMessageV2>
-        get() = libXMTPMessage.reactions().mapNotNull { create(it) }
+    val reactions: List<DecodedMessageV2> by lazy { libXMTPMessage.reactions().mapNotNull { create(it) } }
 
     val hasReactions: Boolean
         get() = libXMTPMessage.hasReactions()
@@ -89,17 +93,19 @@ class DecodedMessageV2 private constructor(
     val fallbackText: String?
         get() = libXMTPMessage.fallbackText()
 
-    val contentTypeId: ContentTypeId
-        get() = ContentTypeIdBuilder.fromFfi(libXMTPMessage.contentTypeId())
+    val contentTypeId: ContentTypeId by lazy { ContentTypeIdBuilder.fromFfi(libXMTPMessage.contentTypeId()) }
 
-    @Suppress("UNCHECKED_CAST")
-    fun <T> content(): T? =
+    private val decodedContent: Any? by lazy {
         try {
-            decodeContent(libXMTPMessage.content()) as? T
+            decodeContent(libXMTPMessage.content())
         } catch (e: Exception) {
             Log.e("DecodedMessageV2", "Error decoding content: ${e.message}")
             null
         }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    fun <T> content(): T? = decodedContent as? T
 
     companion object {
         fun create(libXMTPMessage: FfiDecodedMessage): DecodedMessageV2? =
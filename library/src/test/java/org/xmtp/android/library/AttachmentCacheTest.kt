@@ -0,0 +1,174 @@
+package org.xmtp.android.library
+
+import com.google.protobuf.kotlin.toByteString
+import com.google.protobuf.kotlin.toByteStringUtf8
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.xmtp.android.library.codecs.Attachment
+import org.xmtp.android.library.codecs.AttachmentCache
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.Fetcher
+import org.xmtp.android.library.codecs.RemoteAttachment
+import java.io.File
+import java.net.URL
+import kotlin.random.Random
+
+class AttachmentCacheTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private class CountingFetcher(
+        private val payload: ByteArray,
+    ) : Fetcher {
+        var fetches = 0
+
+        override fun fetch(url: URL): ByteArray {
+            fetches++
+            return payload
+        }
+    }
+
+    private lateinit var directory: File
+
+    @Before
+    fun setUp() {
+        Client.register(codec = AttachmentCodec())
+        directory = folder.newFolder("attachments")
+    }
+
+    private fun remoteAttachment(
+        size: Int,
+        cache: AttachmentCache,
+        seed: Int = 0,
+    ): Pair<RemoteAttachment, CountingFetcher> {
+        val attachment = Attachment("image.png", "image/png", Random(seed).nextBytes(size).toByteString())
+        val encrypted = RemoteAttachment.encodeEncrypted(attachment, AttachmentCodec())
+        val fetcher = CountingFetcher(encrypted.payload.toByteArray())
+        val remoteAttachment =
+            RemoteAttachment
+                .from(URL("https://example.com/$seed"), encrypted)
+                .also {
+                    it.fetcher = fetcher
+                    it.cache = cache
+                }
+        return remoteAttachment to fetcher
+    }
+
+    @Test
+    fun testServesSmallAttachmentsFromMemory() {
+        val cache = AttachmentCache(directory)
+        val (remoteAttachment, fetcher) = remoteAttachment(1_000, cache)
+
+        val first: Attachment = remoteAttachment.load()!!
+        val second: Attachment = remoteAttachment.load()!!
+
+        assertEquals(first, second)
+        assertEquals(1, fetcher.fetches)
+        assertEquals(1, cache.memoryHitCount)
+        assertEquals(1, cache.missCount)
+    }
+
+    @Test
+    fun testServesPayloadsFromDiskAcrossInstances() {
+        val (remoteAttachment, fetcher) = remoteAttachment(1_000, AttachmentCache(directory))
+        val expected: Attachment = remoteAttachment.load()!!
+
+        val reopened = AttachmentCache(directory)
+        remoteAttachment.cache = reopened
+
+        assertEquals(expected, remoteAttachment.load<Attachment>())
+        assertEquals(1, fetcher.fetches)
+        assertEquals(1, reopened.diskHitCount)
+    }
+
+    @Test
+    fun testKeepsLargeAttachmentsOnDiskOnly() {
+        val cache = AttachmentCache(directory, maxMemoryEntryBytes = 10_000)
+        val (remoteAttachment, fetcher) = remoteAttachment(50_000, cache)
+
+        remoteAttachment.load<Attachment>()
+        remoteAttachment.load<Attachment>()
+
+        assertEquals(1, fetcher.fetches)
+        assertEquals(0, cache.memorySize)
+        assertEquals(1, cache.diskHitCount)
+    }
+
+    @Test
+    fun testRefetchesCorruptedPayloads() {
+        val (remoteAttachment, fetcher) = remoteAttachment(1_000, AttachmentCache(directory))
+        remoteAttachment.load<Attachment>()
+        File(directory, remoteAttachment.contentDigest).writeBytes("tampered".toByteArray())
+
+        val reopened = AttachmentCache(directory)
+        remoteAttachment.cache = reopened
+        remoteAttachment.load<Attachment>()
+
+        assertEquals(2, fetcher.fetches)
+        assertEquals(1, reopened.corruptedCount)
+        assertArrayEquals(
+            fetcher.fetch(URL("https://example.com")),
+            File(directory, remoteAttachment.contentDigest).readBytes(),
+        )
+    }
+
+    @Test
+    fun testEvictsLeastRecentlyUsedPayloads() {
+        val cache = AttachmentCache(directory, maxDiskBytes = 25_000, maxMemoryBytes = 0)
+        val attachments = List(3) { remoteAttachment(10_000, cache, seed = it).first }
+
+        attachments.forEach { it.load<Attachment>() }
+
+        assertEquals(2, directory.list()!!.size)
+        assertEquals(false, File(directory, attachments[0].contentDigest).exists())
+        assertEquals(true, cache.diskSize <= 25_000)
+    }
+
+    @Test
+    fun testServesFileLoadsFromDisk() {
+        val cache = AttachmentCache(directory)
+        val (remoteAttachment, fetcher) = remoteAttachment(50_000, cache)
+
+        val first = remoteAttachment.loadAttachmentToFile(folder.newFile("first.png"))
+        val second = remoteAttachment.loadAttachmentToFile(folder.newFile("second.png"))
+
+        assertArrayEquals(first.file.readBytes(), second.file.readBytes())
+        assertEquals(1, fetcher.fetches)
+        assertEquals(1, cache.diskHitCount)
+    }
+
+    @Test
+    fun testRefetchesCorruptedPayloadsForFileLoads() {
+        val cache = AttachmentCache(directory)
+        val (remoteAttachment, fetcher) = remoteAttachment(50_000, cache)
+        val first = remoteAttachment.loadAttachmentToFile(folder.newFile("first.png"))
+        File(directory, remoteAttachment.contentDigest).writeBytes("tampered".toByteArray())
+
+        val second = remoteAttachment.loadAttachmentToFile(folder.newFile("second.png"))
+
+        assertArrayEquals(first.file.readBytes(), second.file.readBytes())
+        assertEquals(2, fetcher.fetches)
+        assertEquals(1, cache.corruptedCount)
+    }
+
+    @Test
+    fun testRequiresMatchingKeyForMemoryHits() {
+        val cache = AttachmentCache(directory)
+        val (remoteAttachment, _) = remoteAttachment(1_000, cache)
+        remoteAttachment.load<Attachment>()
+        val other = "other".toByteStringUtf8()
+
+        with(remoteAttachment) {
+            assertNull(cache.content(contentDigest, other, salt, nonce))
+            assertNull(cache.content(contentDigest, secret, other, nonce))
+            assertNull(cache.content(contentDigest, secret, salt, other))
+            assertNotNull(cache.content(contentDigest, secret, salt, nonce))
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.xmtp.android.library
+
+import com.google.protobuf.kotlin.toByteString
+import kotlinx.coroutines.flow.filterIsInstance
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.xmtp.android.library.codecs.Attachment
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.AttachmentDownloadEvent
+import org.xmtp.android.library.codecs.AttachmentDownloader
+import org.xmtp.android.library.codecs.RemoteAttachment
+import org.xmtp.android.library.codecs.RemoteAttachmentInfo
+import org.xmtp.android.library.codecs.StreamingFetcher
+import java.io.File
+import java.net.URL
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+class AttachmentDownloaderTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val payloads = ConcurrentHashMap<String, ByteArray>()
+    private val inFlight = AtomicInteger()
+    private val maxInFlight = AtomicInteger()
+
+    @Volatile
+    private var chunkDelayMs = 0L
+
+    // Stands in for the attachment host: serves payloads by path, a chunk at a time.
+    private val server =
+        LocalHttpServer { exchange ->
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), ::maxOf)
+            var counted = true
+            try {
+                val payload = payloads[exchange.requestURI.path]
+                if (payload == null) {
+                    exchange.sendResponseHeaders(404, -1)
+                } else {
+                    exchange.sendResponseHeaders(200, payload.size.toLong())
+                    exchange.responseBody.use { body ->
+                        val chunks = payload.asList().chunked(16 * 1024)
+                        chunks.forEachIndexed { index, chunk ->
+                            // Stop counting before the client can see the end of the response
+                            // and start its next download.
+                            if (index == chunks.lastIndex) {
+                                inFlight.decrementAndGet()
+                                counted = false
+                            }
+                            body.write(chunk.toByteArray())
+                            body.flush()
+                            if (chunkDelayMs > 0) Thread.sleep(chunkDelayMs)
+                        }
+                    }
+                }
+            } finally {
+                if (counted) inFlight.decrementAndGet()
+            }
+        }
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    private fun album(count: Int): Pair<List<RemoteAttachmentInfo>, List<ByteArray>> {
+        val data = List(count) { Random(it).nextBytes(50_000 + it * 1_000) }
+        val infos =
+            data.mapIndexed { index, bytes ->
+                val filename = "photo-$index.jpg"
+                val encoded = AttachmentCodec().encode(Attachment(filename, "image/jpeg", bytes.toByteString()))
+                val encrypted = RemoteAttachment.encodeEncryptedBytes(encoded.toByteArray(), filename)
+                val path = "/$index"
+                payloads[path] = encrypted.payload.toByteArray()
+                RemoteAttachmentInfo(
+                    url = server.url(path).toString(),
+                    filename = filename,
+                    contentLength = bytes.size.toLong(),
+                    contentDigest = encrypted.contentDigest,
+                    nonce = encrypted.nonce,
+                    scheme = "https",
+                    salt = encrypted.salt,
+                    secret = encrypted.secret,
+                )
+            }
+        return infos to data
+    }
+
+    @Test
+    fun testLoadsAlbumInOrderWithBoundedConcurrency() {
+        val (infos, data) = album(12)
+        chunkDelayMs = 5
+
+        val files = runBlocking { AttachmentDownloader(concurrency = 3).loadAll(infos, folder.root) }
+
+        assertEquals(12, files.size)
+        files.forEachIndexed { index, file ->
+            assertEquals("photo-$index.jpg", file.filename)
+            assertEquals("image/jpeg", file.mimeType)
+            assertArrayEquals(data[index], file.file.readBytes())
+        }
+        assertTrue(maxInFlight.get() in 1..3)
+    }
+
+    @Test
+    fun testReportsAggregateProgress() {
+        val (infos, _) = album(4)
+        val totalPayload = payloads.values.sumOf { it.size.toLong() }
+
+        val events = runBlocking { AttachmentDownloader(concurrency = 4).download(infos, folder.root).toList() }
+
+        val completed = events.filterIsInstance<AttachmentDownloadEvent.Completed>()
+        val progress = events.filterIsInstance<AttachmentDownloadEvent.Progress>()
+        assertEquals((0 until 4).toSet(), completed.map { it.index }.toSet())
+        // Events from different downloads can arrive out of order, so compare the furthest along.
+        assertEquals(totalPayload, progress.maxOf { it.totalBytesRead })
+        assertEquals(totalPayload, progress.maxOf { it.totalContentLength })
+    }
+
+    @Test
+    fun testDownloadsThroughCustomFetcher() {
+        val (infos, data) = album(3)
+        // Serves payloads without the HTTP server, so progress comes from the default implementation.
+        val fetcher =
+            object : StreamingFetcher {
+                override fun fetch(url: URL): ByteArray = payloads.getValue(url.path)
+
+                override fun fetch(
+                    url: URL,
+                    destination: File,
+                ) = destination.writeBytes(fetch(url))
+            }
+
+        val events = runBlocking { AttachmentDownloader(fetcher = fetcher).download(infos, folder.root).toList() }
+
+        val completed = events.filterIsInstance<AttachmentDownloadEvent.Completed>().sortedBy { it.index }
+        assertEquals(data.map { it.toList() }, completed.map { it.attachment.file.readBytes().toList() })
+        assertEquals(
+            payloads.values.sumOf { it.size.toLong() },
+            events.filterIsInstance<AttachmentDownloadEvent.Progress>().maxOf { it.totalBytesRead },
+        )
+        assertEquals(0, maxInFlight.get())
+    }
+
+    @Test
+    fun testCancellingStopsDownloadsAndCleansUp() {
+        val (infos, _) = album(6)
+        chunkDelayMs = 50
+
+        runBlocking {
+            AttachmentDownloader(concurrency = 2)
+                .download(infos, folder.root)
+                .filterIsInstance<AttachmentDownloadEvent.Progress>()
+                .first { it.bytesRead > 0 }
+        }
+
+        assertEquals(emptyList<String>(), folder.root.list()!!.toList())
+    }
+}
@@ -0,0 +1,126 @@
+package org.xmtp.android.library
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.ContentTypeId
+import org.xmtp.android.library.codecs.ContentTypeIdBuilder
+import org.xmtp.android.library.codecs.ContentTypeReaction
+import org.xmtp.android.library.codecs.ReactionCodec
+import org.xmtp.android.library.codecs.ReplyCodec
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.codecs.id
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+
+class CodecRegistryTest {
+    private fun registry(): CodecRegistry =
+        CodecRegistry().apply {
+            register(TextCodec())
+            register(ReactionCodec())
+            register(ReplyCodec())
+            register(AttachmentCodec())
+        }
+
+    @Test
+    fun testFindsCodecForEqualContentType() {
+        val registry = registry()
+        val parsed = ContentTypeId.parseFrom(ContentTypeReaction.toByteArray())
+
+        assertTrue(registry.find(ContentTypeReaction) is ReactionCodec)
+        assertTrue(registry.find(parsed) is ReactionCodec)
+        assertTrue(registry.findFromId(ContentTypeReaction.id) is ReactionCodec)
+    }
+
+    @Test
+    fun testDifferentVersionIsNotMatched() {
+        val registry = registry()
+        val reactionV2 =
+            ContentTypeIdBuilder.builderFromAuthorityId(
+                ContentTypeReaction.authorityId,
+                ContentTypeReaction.typeId,
+                versionMajor = ContentTypeReaction.versionMajor + 1,
+                versionMinor = 0,
+            )
+
+        assertTrue(registry.find(reactionV2) is TextCodec)
+    }
+
+    @Test
+    fun testFallbackCodecIsShared() {
+        val registry = registry()
+        val unknown = ContentTypeIdBuilder.builderFromAuthorityId("example.com", "unknown", 1, 0)
+
+        assertSame(registry.find(unknown), registry.find(null))
+        assertSame(registry.find(unknown), registry.findFromId("example.com:unknown:1.0"))
+    }
+
+    @Suppress("DEPRECATION")
+    @Test
+    fun testLaterRegistrationReplacesCodec() {
+        val registry = registry()
+        val replacement = ReactionCodec()
+
+        registry.register(replacement)
+
+        assertSame(replacement, registry.find(ContentTypeReaction))
+        assertEquals(4, registry.codecs.size)
+    }
+
+    @Suppress("DEPRECATION")
+    @Test
+    fun testLookupsDuringRegistration() {
+        val registry = CodecRegistry().apply { register(ReactionCodec()) }
+        val failures = mutableListOf<Throwable>()
+        val done = CountDownLatch(1)
+        val reader =
+            thread {
+                try {
+                    while (done.count > 0) {
+                        check(registry.find(ContentTypeReaction) is ReactionCodec)
+                    }
+                } catch (e: Throwable) {
+                    synchronized(failures) { failures.add(e) }
+                }
+            }
+
+        repeat(500) { index ->
+            registry.register(TextCodec(ContentTypeIdBuilder.builderFromAuthorityId("example.com", "t$index", 1, 0)))
+        }
+        done.countDown()
+        reader.join()
+
+        assertTrue(failures.isEmpty())
+        assertEquals(501, registry.codecs.size)
+    }
+
+    @Suppress("DEPRECATION")
+    @Test
+    fun testCodecsViewWritesThrough() {
+        val registry = CodecRegistry(mutableMapOf(ContentTypeReaction.id to ReactionCodec()))
+        val text = TextCodec()
+
+        registry.codecs[text.contentType.id] = text
+        assertSame(text, registry.find(text.contentType))
+
+        registry.codecs.remove(ContentTypeReaction.id)
+        assertTrue(registry.find(ContentTypeReaction) is TextCodec)
+        assertEquals(listOf(text.contentType.id), registry.codecs.keys.toList())
+    }
+
+    @Test
+    fun testEqualityFollowsRegisteredCodecs() {
+        val reaction = ReactionCodec()
+        val registry = CodecRegistry().apply { register(reaction) }
+        val same = CodecRegistry().apply { register(reaction) }
+
+        assertEquals(registry, same)
+        assertEquals(registry.hashCode(), same.hashCode())
+
+        same.register(TextCodec())
+        assertNotEquals(registry, same)
+    }
+}
@@ -1,8 +1,16 @@
 package org.xmtp.android.library
 
 import com.google.protobuf.kotlin.toByteString
+import org.junit.Assert.assertArrayEquals
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertThrows
 import org.junit.Test
+import org.web3j.crypto.Hash
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.Executors
+import kotlin.random.Random
 
 class CryptoTest {
     @Test
@@ -98,4 +106,118 @@ class CryptoTest {
         val decrypted = Crypto.decrypt(secret, encrypted)
         assertEquals(message.toByteString(), decrypted!!.toByteString())
     }
+
+    @Test
+    fun testStreamedPayloadMatchesInMemoryFormat() {
+        val message = Random(3).nextBytes(200_000)
+        val secret = byteArrayOf(1, 2, 3, 4)
+        val payload = ByteArrayOutputStream()
+
+        val encrypted = Crypto.encryptStream(secret, ByteArrayInputStream(message), payload)
+
+        assertEquals(payload.size().toLong(), encrypted.payloadLength)
+        assertArrayEquals(Hash.sha256(payload.toByteArray()), encrypted.payloadSha256)
+        val ciphertext =
+            CipherText
+                .newBuilder()
+                .apply {
+                    aes256GcmHkdfSha256 =
+                        aes256GcmHkdfSha256
+                            .toBuilder()
+                            .also {
+                                it.payload = payload.toByteArray().toByteString()
+                                it.hkdfSalt = encrypted.salt.toByteString()
+                                it.gcmNonce = encrypted.nonce.toByteString()
+                            }.build()
+                }.build()
+        assertArrayEquals(message, Crypto.decrypt(secret, ciphertext))
+    }
+
+    @Test
+    fun testStreamedDecryptionOfInMemoryPayload() {
+        val message = Random(4).nextBytes(200_000)
+        val secret = byteArrayOf(1, 2, 3, 4)
+        val ciphertext = Crypto.encrypt(secret, message)!!.aes256GcmHkdfSha256
+        val decrypted = ByteArrayOutputStream()
+
+        val digest =
+            Crypto.decryptStream(
+                secret,
+                ciphertext.hkdfSalt.toByteArray(),
+                ciphertext.gcmNonce.toByteArray(),
+                ciphertext.payload.newInput(),
+                decrypted,
+            )
+
+        assertArrayEquals(message, decrypted.toByteArray())
+        assertArrayEquals(Hash.sha256(ciphertext.payload.toByteArray()), digest)
+    }
+
+    @Test
+    fun testStreamedDecryptionRejectsTamperedPayload() {
+        val secret = byteArrayOf(1, 2, 3, 4)
+        val ciphertext = Crypto.encrypt(secret, byteArrayOf(5, 5, 5))!!.aes256GcmHkdfSha256
+        val payload = ciphertext.payload.toByteArray().also { it[0] = (it[0] + 1).toByte() }
+
+        assertThrows(XMTPException::class.java) {
+            Crypto.decryptStream(
+                secret,
+                ciphertext.hkdfSalt.toByteArray(),
+                ciphertext.gcmNonce.toByteArray(),
+                ByteArrayInputStream(payload),
+                ByteArrayOutputStream(),
+            )
+        }
+    }
+
+    @Test
+    fun testByteBufferRoundTripUsesRemainingBytes() {
+        val message = Random(5).nextBytes(1_000)
+        val secret = byteArrayOf(1, 2, 3, 4)
+        val aad = byteArrayOf(9, 9)
+        // Only the middle of the buffer is the message.
+        val buffer = ByteBuffer.wrap(byteArrayOf(7) + message + byteArrayOf(7), 1, message.size)
+
+        val ciphertext = Crypto.encrypt(secret, buffer, aad)!!.aes256GcmHkdfSha256
+        val decrypted =
+            Crypto.decrypt(
+                secret,
+                ciphertext.hkdfSalt.toByteArray(),
+                ciphertext.gcmNonce.toByteArray(),
+                ciphertext.payload.asReadOnlyByteBuffer(),
+                aad,
+            )
+
+        assertArrayEquals(message, decrypted)
+    }
+
+    @Test
+    fun testConcurrentRoundTrips() {
+        val secret = byteArrayOf(1, 2, 3, 4)
+        val pool = Executors.newFixedThreadPool(8)
+        try {
+            val results =
+                (0 until 200)
+                    .map { seed ->
+                        pool.submit<Boolean> {
+                            val message = Random(seed).nextBytes(64 + seed)
+                            val encrypted = Crypto.encrypt(secret, message)!!
+                            message.contentEquals(Crypto.decrypt(secret, encrypted))
+                        }
+                    }.map { it.get() }
+
+            assertEquals(List(200) { true }, results)
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun testFreshSaltAndNonceForEveryMessage() {
+        val secret = byteArrayOf(1, 2, 3, 4)
+        val ciphertexts = List(100) { Crypto.encrypt(secret, byteArrayOf(5, 5, 5))!!.aes256GcmHkdfSha256 }
+
+        assertEquals(100, ciphertexts.map { it.hkdfSalt }.toSet().size)
+        assertEquals(100, ciphertexts.map { it.gcmNonce }.toSet().size)
+    }
 }
@@ -0,0 +1,51 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import java.util.concurrent.atomic.AtomicInteger
+
+class DecodeOptionsTest {
+    private val page = (0 until 1_000).toList()
+
+    private fun decode(value: Int): String? = if (value % 7 == 0) null else "message-$value"
+
+    @Test
+    fun testDecodesSmallPagesSequentially() {
+        val preloaded = AtomicInteger()
+        val options = DecodeOptions(parallelism = 4, parallelThreshold = 2_000)
+
+        val decoded = runBlocking { page.decodePage(options, preload = { preloaded.incrementAndGet() }, ::decode) }
+
+        assertEquals(page.mapNotNull(::decode), decoded)
+        assertEquals(0, preloaded.get())
+    }
+
+    @Test
+    fun testParallelDecodePreservesOrderAndDropsFailures() {
+        val preloaded = AtomicInteger()
+        val options = DecodeOptions(parallelism = 4, parallelThreshold = 100, minChunkSize = 16)
+
+        val decoded = runBlocking { page.decodePage(options, preload = { preloaded.incrementAndGet() }, ::decode) }
+
+        assertEquals(page.mapNotNull(::decode), decoded)
+        assertEquals(decoded.size, preloaded.get())
+    }
+
+    @Test
+    fun testParallelDecodeOfMessages() {
+        val messages = List(300) { textFfiMessage("message-$it") }
+
+        val decoded =
+            runBlocking {
+                messages.decodePage(DecodeOptions.parallel(), preload = { it.content<Any>() }) {
+                    DecodedMessage.create(it)
+                }
+            }
+
+        assertEquals(messages.map { it.id.toHex() }, decoded.map { it.id })
+        assertTrue(decoded.withIndex().all { (index, message) -> message.body == "message-$index" })
+    }
+}
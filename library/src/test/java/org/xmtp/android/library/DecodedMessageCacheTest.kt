@@ -0,0 +1,72 @@
+package org.xmtp.android.library
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import uniffi.xmtpv3.FfiDeliveryStatus
+
+class DecodedMessageCacheTest {
+    @Test
+    fun testReusesDecodedMessageForSameIdAndStatus() {
+        val cache = DecodedMessageCache()
+        val message = textFfiMessage("hello")
+
+        val first = cache.decode(message)
+        val second = cache.decode(message.copy())
+
+        assertSame(first, second)
+        assertEquals("hello", second?.body)
+        assertEquals(1L, cache.hitCount)
+        assertEquals(1L, cache.missCount)
+    }
+
+    @Test
+    fun testDecodesAgainWhenDeliveryStatusChanges() {
+        val cache = DecodedMessageCache()
+        val unpublished = textFfiMessage("hello", deliveryStatus = FfiDeliveryStatus.UNPUBLISHED)
+        val published = unpublished.copy(deliveryStatus = FfiDeliveryStatus.PUBLISHED)
+
+        val first = cache.decode(unpublished)
+        val second = cache.decode(published)
+
+        assertNotSame(first, second)
+        assertEquals(DecodedMessage.MessageDeliveryStatus.PUBLISHED, second?.deliveryStatus)
+    }
+
+    @Test
+    fun testInvalidateDropsAllStatuses() {
+        val cache = DecodedMessageCache()
+        val unpublished = textFfiMessage("hello", deliveryStatus = FfiDeliveryStatus.UNPUBLISHED)
+        cache.decode(unpublished)
+        cache.decode(unpublished.copy(deliveryStatus = FfiDeliveryStatus.PUBLISHED))
+        assertEquals(2, cache.size)
+
+        cache.invalidate(unpublished.id.toHex())
+
+        assertEquals(0, cache.size)
+        assertEquals(0L, cache.sizeBytes)
+    }
+
+    @Test
+    fun testEvictsLeastRecentlyUsedWhenOverSize() {
+        val first = textFfiMessage("first")
+        val second = textFfiMessage("second")
+        val third = textFfiMessage("third")
+        val probe = DecodedMessageCache()
+        probe.decode(first)
+        val cache = DecodedMessageCache(maxSizeBytes = probe.sizeBytes * 2 + 8)
+
+        cache.decode(first)
+        cache.decode(second)
+        cache.decode(first)
+        cache.decode(third)
+
+        assertEquals(2, cache.size)
+        cache.decode(first)
+        assertEquals(2L, cache.hitCount)
+        cache.decode(second)
+        assertEquals(2L, cache.hitCount)
+    }
+}
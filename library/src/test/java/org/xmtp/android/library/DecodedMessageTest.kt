@@ -0,0 +1,80 @@
+package org.xmtp.android.library
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.xmtp.android.library.codecs.ContentTypeGroupUpdated
+import org.xmtp.android.library.codecs.ContentTypeText
+import org.xmtp.android.library.codecs.EncodedContent
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.codecs.compress
+import org.xmtp.android.library.libxmtp.DecodedMessage
+
+class DecodedMessageTest {
+    @Test
+    fun testReadsContentTypeWithoutDecoding() {
+        val message = DecodedMessage.create(textFfiMessage("hello"))
+
+        assertNotNull(message)
+        assertEquals(ContentTypeText, message!!.contentType)
+        assertEquals("hello", message.body)
+    }
+
+    @Test
+    fun testReadsContentTypeOfCompressedContent() {
+        val encoded = TextCodec().encode("x".repeat(1_000)).compress(EncodedContentCompression.GZIP)
+        val message = DecodedMessage.create(textFfiMessage("").copy(content = encoded.toByteArray()))
+
+        assertEquals(ContentTypeText, message?.contentType)
+        assertEquals("x".repeat(1_000), message?.body)
+    }
+
+    @Test
+    fun testUndecodableContentFallsBack() {
+        val encoded =
+            EncodedContent
+                .newBuilder()
+                .setType(ContentTypeText)
+                .putParameters("encoding", "not-utf-8")
+                .setFallback("fallback text")
+                .build()
+        val message = DecodedMessage.create(textFfiMessage("").copy(content = encoded.toByteArray()))
+
+        assertNotNull(message)
+        assertNull(message!!.content<String>())
+        assertEquals("fallback text", message.body)
+    }
+
+    @Test
+    fun testRejectsMembershipChangeOutsideMembershipMessages() {
+        val encoded = EncodedContent.newBuilder().setType(ContentTypeGroupUpdated).build()
+
+        assertNull(DecodedMessage.create(textFfiMessage("").copy(content = encoded.toByteArray())))
+    }
+
+    @Test
+    fun testRejectsMalformedContent() {
+        val encoded = TextCodec().encode("hello").toByteArray()
+        // Truncated inside the content field, after the type has been read.
+        val truncated = encoded.copyOf(encoded.size - 2)
+        // A complete message followed by a field with an invalid wire type.
+        val garbled = encoded + byteArrayOf(0x17, 0x01)
+
+        assertNull(DecodedMessage.create(textFfiMessage("").copy(content = truncated)))
+        assertNull(DecodedMessage.create(textFfiMessage("").copy(content = garbled)))
+    }
+
+    @Test
+    fun testInvalidStringsReadAsEmptyContent() {
+        // A fallback (field 3) that isn't valid UTF-8 passes the wire-format check in create().
+        val encoded = EncodedContent.newBuilder().setType(ContentTypeText).build().toByteArray()
+        val message =
+            DecodedMessage.create(textFfiMessage("").copy(content = encoded + byteArrayOf(0x1a, 0x01, 0xff.toByte())))
+
+        assertNotNull(message)
+        assertEquals(ContentTypeText, message!!.encodedContent.type)
+        assertEquals("", message.fallback)
+        assertEquals("", message.body)
+    }
+}
@@ -0,0 +1,85 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.xmtp.android.library.fake.FakeXmtpBackend
+import org.xmtp.android.library.fake.LoadGenerator
+
+class FakeBackendLoadTest {
+    private val backend = FakeXmtpBackend()
+    private val generator = LoadGenerator(backend, seed = 42)
+    private val client = backend.client()
+
+    private suspend fun awaitMessageStreams(count: Int) {
+        withTimeout(5_000) {
+            while (backend.messageStreamCount < count) delay(5)
+        }
+    }
+
+    @Test
+    fun testListsSeededConversationsByLastActivity() {
+        generator.seed(conversationCount = 500, messagesPerConversation = 20)
+
+        runBlocking {
+            val page = client.conversations.list(limit = 50)
+            val groups = client.conversations.listGroups()
+            val dms = client.conversations.listDms()
+
+            assertEquals(50, page.size)
+            assertEquals(page.map { it.lastActivityNs }.sortedDescending(), page.map { it.lastActivityNs })
+            assertEquals(500, groups.size + dms.size)
+            assertEquals(10_000, backend.messageCount)
+        }
+    }
+
+    @Test
+    fun testPagesMessagesNewestFirst() {
+        val conversation = generator.seed(conversationCount = 1, messagesPerConversation = 120).single()
+
+        runBlocking {
+            val group = client.conversations.findConversation(conversation.id().toHex())!!
+            val firstPage = group.messages(limit = 50)
+            val secondPage = group.messages(limit = 50, beforeNs = firstPage.last().sentAtNs)
+
+            assertEquals(50, firstPage.size)
+            assertEquals(firstPage.map { it.sentAtNs }.sortedDescending(), firstPage.map { it.sentAtNs })
+            assertTrue(secondPage.first().sentAtNs < firstPage.last().sentAtNs)
+        }
+    }
+
+    @Test
+    fun testStreamsFanOutSimulatedTraffic() {
+        val conversations = generator.seed(conversationCount = 100, messagesPerConversation = 0)
+        val messageCount = 2_000
+        val subscriberCount = 3
+
+        runBlocking {
+            val subscribers =
+                List(subscriberCount) {
+                    async(Dispatchers.IO) { client.conversations.streamAllMessages().take(messageCount).toList() }
+                }
+            awaitMessageStreams(subscriberCount)
+
+            generator.simulateTraffic(conversations, messageCount, messagesPerSecond = 100_000)
+            val received = withTimeout(10_000) { subscribers.awaitAll() }
+
+            received.forEach { messages ->
+                assertEquals(messageCount, messages.size)
+                messages.groupBy { it.conversationId }.values.forEach { perConversation ->
+                    val sent = perConversation.map { it.sentAtNs }
+                    assertEquals(sent.sorted(), sent)
+                }
+            }
+        }
+        assertEquals(0, backend.messageStreamCount)
+    }
+}
@@ -0,0 +1,188 @@
+package org.xmtp.android.library
+
+import com.sun.net.httpserver.HttpExchange
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.xmtp.android.library.codecs.FetchListener
+import org.xmtp.android.library.codecs.HTTPFetcher
+import java.io.IOException
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+import kotlin.random.Random
+
+class HTTPFetcherTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val payload = Random(0).nextBytes(200_000)
+    private val requests = AtomicInteger()
+    private val ranges = CopyOnWriteArrayList<String?>()
+
+    // Decides how the server answers the nth request, counting from 0.
+    @Volatile
+    private var respond: (HttpExchange, Int) -> Unit = { exchange, _ -> serve(exchange) }
+
+    private val server =
+        LocalHttpServer { exchange ->
+            val request = requests.getAndIncrement()
+            ranges.add(exchange.requestHeaders.getFirst("Range"))
+            respond(exchange, request)
+        }
+
+    private val url = server.url("/payload")
+
+    private val fetcher =
+        HTTPFetcher(readTimeoutMs = 500, maxRetries = 3, initialBackoffMs = 1, maxBackoffMs = 10)
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    // Serves the payload, honoring a `Range: bytes=n-` request unless [ranges] is false, and
+    // stopping after [limit] bytes of the body.
+    private fun serve(
+        exchange: HttpExchange,
+        ranges: Boolean = true,
+        limit: Int = Int.MAX_VALUE,
+    ) {
+        exchange.responseHeaders.add("ETag", "\"v1\"")
+        val start =
+            exchange.requestHeaders
+                .getFirst("Range")
+                ?.takeIf { ranges }
+                ?.removePrefix("bytes=")
+                ?.removeSuffix("-")
+                ?.toInt()
+        if (start != null) {
+            exchange.responseHeaders.add("Content-Range", "bytes $start-${payload.size - 1}/${payload.size}")
+            exchange.sendResponseHeaders(206, (payload.size - start).toLong())
+        } else {
+            exchange.sendResponseHeaders(200, payload.size.toLong())
+        }
+        val from = start ?: 0
+        exchange.responseBody.write(payload, from, minOf(payload.size - from, limit))
+        exchange.responseBody.flush()
+    }
+
+    @Test
+    fun testResumesDroppedDownloadWithRange() {
+        respond = { exchange, request -> serve(exchange, limit = if (request == 0) 120_000 else Int.MAX_VALUE) }
+
+        val file = folder.newFile()
+        fetcher.fetch(url, file)
+
+        assertArrayEquals(payload, file.readBytes())
+        assertEquals(listOf(null, "bytes=120000-"), ranges.toList())
+    }
+
+    @Test
+    fun testRestartsWhenServerIgnoresRange() {
+        respond = { exchange, request ->
+            serve(exchange, ranges = false, limit = if (request == 0) 120_000 else Int.MAX_VALUE)
+        }
+
+        assertArrayEquals(payload, fetcher.fetch(url))
+        assertEquals(2, requests.get())
+    }
+
+    @Test
+    fun testRetriesServerErrors() {
+        respond = { exchange, request ->
+            if (request < 2) exchange.sendResponseHeaders(503, -1) else serve(exchange)
+        }
+
+        assertArrayEquals(payload, fetcher.fetch(url))
+        assertEquals(3, requests.get())
+    }
+
+    @Test
+    fun testRetriesStalledResponses() {
+        respond = { exchange, request ->
+            if (request == 0) Thread.sleep(2_000)
+            serve(exchange)
+        }
+
+        assertArrayEquals(payload, fetcher.fetch(url))
+    }
+
+    @Test
+    fun testGivesUpAfterMaxRetries() {
+        respond = { exchange, _ -> exchange.sendResponseHeaders(500, -1) }
+
+        assertThrows(IOException::class.java) { fetcher.fetch(url) }
+        assertEquals(4, requests.get())
+    }
+
+    @Test
+    fun testCapsAttemptsThatKeepMakingProgress() {
+        // Every response is cut short after 10 KB, so each retry makes progress.
+        respond = { exchange, _ -> serve(exchange, limit = 10_000) }
+        val capped = HTTPFetcher(readTimeoutMs = 500, maxRetries = 3, maxAttempts = 5, initialBackoffMs = 1)
+
+        assertThrows(IOException::class.java) { capped.fetch(url, folder.newFile()) }
+        assertEquals(5, requests.get())
+    }
+
+    @Test
+    fun testStopsWaitingToRetryWhenCancelled() {
+        respond = { exchange, _ -> exchange.sendResponseHeaders(503, -1) }
+        val cancelled = AtomicBoolean()
+        val listener =
+            object : FetchListener {
+                override fun onProgress(
+                    bytesRead: Long,
+                    contentLength: Long,
+                ) {}
+
+                override fun checkCancelled() {
+                    if (cancelled.get()) throw CancellationException()
+                }
+            }
+        val patient = HTTPFetcher(maxRetries = 3, initialBackoffMs = 60_000, maxBackoffMs = 60_000)
+        thread {
+            Thread.sleep(200)
+            cancelled.set(true)
+        }
+
+        val startedAt = System.currentTimeMillis()
+        assertThrows(CancellationException::class.java) {
+            patient.fetch(url, folder.newFile(), maxBytes = null, listener = listener)
+        }
+        assertTrue(System.currentTimeMillis() - startedAt < 10_000)
+        assertEquals(1, requests.get())
+    }
+
+    @Test
+    fun testDoesNotRetryClientErrors() {
+        respond = { exchange, _ -> exchange.sendResponseHeaders(404, -1) }
+
+        assertThrows(XMTPException::class.java) { fetcher.fetch(url) }
+        assertEquals(1, requests.get())
+    }
+
+    @Test
+    fun testRejectsPayloadsOverMaxBytes() {
+        assertThrows(XMTPException::class.java) { fetcher.fetch(url, maxBytes = 100_000) }
+        assertEquals(1, requests.get())
+    }
+
+    @Test
+    fun testRejectsOversizedBodyWithoutContentLength() {
+        respond = { exchange, _ ->
+            exchange.sendResponseHeaders(200, 0)
+            exchange.responseBody.write(payload)
+        }
+
+        assertThrows(XMTPException::class.java) { fetcher.fetch(url, maxBytes = 100_000) }
+    }
+}
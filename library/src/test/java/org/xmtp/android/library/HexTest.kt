@@ -0,0 +1,53 @@
+package org.xmtp.android.library
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import kotlin.random.Random
+
+class HexTest {
+    @Test
+    fun testEncodesLikeStringFormat() {
+        val bytes = Random(7).nextBytes(256) + (0..255).map { it.toByte() }
+
+        assertEquals(bytes.joinToString(separator = "") { "%02x".format(it) }, bytes.toHex())
+        assertEquals("", ByteArray(0).toHex())
+    }
+
+    @Test
+    fun testDecodesWhatItEncodes() {
+        val bytes = Random(7).nextBytes(64)
+
+        assertArrayEquals(bytes, bytes.toHex().hexToByteArray())
+        assertArrayEquals(bytes, bytes.toHex().uppercase().hexToByteArray())
+    }
+
+    @Test
+    fun testDecodesPrefixedAndOddLengthHex() {
+        assertArrayEquals(byteArrayOf(0x0a, 0xbc.toByte()), "0xabc".hexToByteArray())
+        assertArrayEquals(byteArrayOf(0x01, 0x02), "0X0102".hexToByteArray())
+        assertArrayEquals(ByteArray(0), "0x".hexToByteArray())
+    }
+
+    @Test
+    fun testRejectsNonHexCharacters() {
+        assertThrows(IllegalArgumentException::class.java) { "12zz".hexToByteArray() }
+        assertThrows(IllegalArgumentException::class.java) { "ü0".hexToByteArray() }
+    }
+
+    @Test
+    fun testIdsCompareByContent() {
+        val bytes = Random(7).nextBytes(32)
+        val id = MessageId.of(bytes)
+
+        assertEquals(id, MessageId.fromHex(bytes.toHex()))
+        assertEquals(id.hashCode(), MessageId.fromHex(bytes.toHex()).hashCode())
+        assertEquals(bytes.toHex(), id.hex)
+        assertNotEquals(id, ConversationId.of(bytes))
+
+        bytes[0] = (bytes[0] + 1).toByte()
+        assertNotEquals(MessageId.of(bytes), id)
+    }
+}
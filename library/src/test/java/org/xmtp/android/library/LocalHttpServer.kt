@@ -0,0 +1,42 @@
+package org.xmtp.android.library
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import java.io.Closeable
+import java.net.InetSocketAddress
+import java.net.URL
+import java.util.concurrent.Executors
+
+/**
+ * An HTTP server on a free local port, for tests of code that fetches over HTTP. Each request is
+ * passed to [handler] on a thread of its own and the exchange is closed afterwards; errors from
+ * a client that went away, a response cut short on purpose or the server closing are ignored.
+ */
+class LocalHttpServer(
+    private val handler: (HttpExchange) -> Unit,
+) : Closeable {
+    private val threads = Executors.newCachedThreadPool()
+
+    private val server =
+        HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+            executor = threads
+            createContext("/") { exchange ->
+                try {
+                    handler(exchange)
+                } catch (e: Exception) {
+                    // The client went away, the response was cut short on purpose, or the server
+                    // is closing and interrupted the handler.
+                } finally {
+                    exchange.close()
+                }
+            }
+            start()
+        }
+
+    fun url(path: String): URL = URL("http://127.0.0.1:${server.address.port}$path")
+
+    override fun close() {
+        server.stop(0)
+        threads.shutdownNow()
+    }
+}
@@ -0,0 +1,67 @@
+package org.xmtp.android.library
+
+import com.google.protobuf.kotlin.toByteStringUtf8
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.xmtp.android.library.codecs.ContentTypeReaction
+import org.xmtp.android.library.codecs.EncodedContent
+import org.xmtp.android.library.codecs.Reaction
+import org.xmtp.android.library.codecs.ReactionAction
+import org.xmtp.android.library.codecs.ReactionCodec
+import org.xmtp.android.library.codecs.ReactionSchema
+
+class ReactionCodecTest {
+    private val codec = ReactionCodec()
+
+    @Test
+    fun testEncodesCanonicalJson() {
+        val reaction =
+            Reaction(
+                reference = "abc123",
+                action = ReactionAction.Removed,
+                content = "“smile” <3",
+                schema = ReactionSchema.Shortcode,
+            )
+
+        val encoded = codec.encode(reaction)
+
+        assertEquals(
+            // Gson escapes HTML characters by default; kept so the bytes match what was sent before.
+            """{"reference":"abc123","action":"removed","content":"“smile” \u003c3","schema":"shortcode"}""",
+            encoded.content.toStringUtf8(),
+        )
+        assertEquals(reaction, codec.decode(encoded))
+    }
+
+    @Test
+    fun testDecodesJsonWithExtraFieldsAndMixedCase() {
+        val encoded =
+            EncodedContent
+                .newBuilder()
+                .also {
+                    it.type = ContentTypeReaction
+                    it.content =
+                        """{"schema":"Unicode","content":"👍","extra":{"a":[1,2]},"action":"ADDED","reference":"abc"}"""
+                            .toByteStringUtf8()
+                }.build()
+
+        assertEquals(Reaction("abc", ReactionAction.Added, "👍", ReactionSchema.Unicode), codec.decode(encoded))
+    }
+
+    @Test
+    fun testFallsBackToLegacyParameters() {
+        val encoded =
+            EncodedContent
+                .newBuilder()
+                .also {
+                    it.type = ContentTypeReaction
+                    it.putAllParameters(mapOf("action" to "added", "reference" to "abc", "schema" to "unicode"))
+                    it.content = """{"reference":"abc"}""".toByteStringUtf8()
+                }.build()
+
+        val reaction = codec.decode(encoded)
+
+        assertEquals(ReactionAction.Added, reaction.action)
+        assertEquals("""{"reference":"abc"}""", reaction.content)
+    }
+}
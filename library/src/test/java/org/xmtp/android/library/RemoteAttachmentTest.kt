@@ -1,22 +1,39 @@
 package org.xmtp.android.library
 
+import com.google.protobuf.kotlin.toByteString
 import com.google.protobuf.kotlin.toByteStringUtf8
 import kotlinx.coroutines.runBlocking
 import org.junit.Assert
 import org.junit.Ignore
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.xmtp.android.library.codecs.Attachment
 import org.xmtp.android.library.codecs.AttachmentCodec
 import org.xmtp.android.library.codecs.ContentTypeAttachment
 import org.xmtp.android.library.codecs.ContentTypeRemoteAttachment
+import org.xmtp.android.library.codecs.EncryptedEncodedContent
 import org.xmtp.android.library.codecs.RemoteAttachment
 import org.xmtp.android.library.codecs.RemoteAttachmentCodec
+import org.xmtp.android.library.codecs.compress
 import org.xmtp.android.library.codecs.decoded
 import org.xmtp.android.library.codecs.id
 import java.io.File
 import java.net.URL
+import kotlin.random.Random
 
 class RemoteAttachmentTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun remoteAttachment(encrypted: EncryptedEncodedContent): RemoteAttachment {
+        val payload = folder.newFile()
+        payload.writeBytes(encrypted.payload.toByteArray())
+        return RemoteAttachment
+            .from(URL("https://${payload.absolutePath}"), encrypted)
+            .also { it.fetcher = TestFetcher() }
+    }
+
     @Test
     fun testEncryptedContentShouldBeDecryptable() {
         Client.register(codec = AttachmentCodec())
@@ -186,4 +203,89 @@ class RemoteAttachmentTest {
             }
         }
     }
+
+    @Test
+    fun testStreamedAttachmentIsDecryptableInMemory() {
+        Client.register(codec = AttachmentCodec())
+        val data = Random(1).nextBytes(300_000)
+        val source = folder.newFile("video.mp4").apply { writeBytes(data) }
+        val payload = folder.newFile()
+
+        val encrypted = RemoteAttachment.encodeEncryptedAttachmentFile(source, "video/mp4", payload)
+
+        Assert.assertEquals(payload.length(), encrypted.payloadLength)
+        val remoteAttachment = RemoteAttachment.from(URL("https://example.com/video.mp4"), encrypted)
+        Assert.assertEquals(payload.length().toInt(), remoteAttachment.contentLength)
+        Assert.assertEquals("video.mp4", remoteAttachment.filename)
+        val decrypted =
+            RemoteAttachment.decryptEncoded(
+                EncryptedEncodedContent(
+                    contentDigest = encrypted.contentDigest,
+                    secret = encrypted.secret,
+                    salt = encrypted.salt,
+                    nonce = encrypted.nonce,
+                    payload = payload.readBytes().toByteString(),
+                ),
+            )
+        val attachment = decrypted.decoded<Attachment>()!!
+        Assert.assertEquals("video.mp4", attachment.filename)
+        Assert.assertEquals("video/mp4", attachment.mimeType)
+        Assert.assertArrayEquals(data, attachment.data.toByteArray())
+    }
+
+    @Test
+    fun testLoadsAttachmentToFile() {
+        val data = Random(2).nextBytes(200_000)
+        val attachment = Attachment("photo.jpg", "image/jpeg", data.toByteString())
+        val destination = File(folder.root, "photo.jpg")
+
+        val loaded =
+            remoteAttachment(RemoteAttachment.encodeEncrypted(attachment, AttachmentCodec()))
+                .loadAttachmentToFile(destination)
+
+        Assert.assertEquals("photo.jpg", loaded.filename)
+        Assert.assertEquals("image/jpeg", loaded.mimeType)
+        Assert.assertArrayEquals(data, destination.readBytes())
+        Assert.assertEquals(listOf("photo.jpg"), folder.root.list()!!.filter { !it.startsWith("junit") })
+    }
+
+    @Test
+    fun testLoadsCompressedAttachmentToFile() {
+        val data = ByteArray(100_000) { (it % 7).toByte() }
+        val encoded =
+            AttachmentCodec()
+                .encode(Attachment("log.txt", "text/plain", data.toByteString()))
+                .compress(EncodedContentCompression.GZIP)
+        val destination = File(folder.root, "log.txt")
+
+        remoteAttachment(RemoteAttachment.encodeEncryptedBytes(encoded.toByteArray(), "log.txt"))
+            .loadAttachmentToFile(destination)
+
+        Assert.assertArrayEquals(data, destination.readBytes())
+        Assert.assertEquals(listOf("log.txt"), folder.root.list()!!.filter { !it.startsWith("junit") })
+    }
+
+    @Test
+    fun testRejectsPayloadsLargerThanContentLengthAllows() {
+        Client.register(codec = AttachmentCodec())
+        val attachment = Attachment("big.bin", "application/octet-stream", Random(3).nextBytes(200_000).toByteString())
+        val remoteAttachment =
+            remoteAttachment(RemoteAttachment.encodeEncrypted(attachment, AttachmentCodec()))
+                .also { it.contentLength = 1_000 }
+
+        Assert.assertThrows(XMTPException::class.java) { remoteAttachment.load<Attachment>() }
+    }
+
+    @Test
+    fun testLoadingToFileEnsuresContentDigestMatches() {
+        val attachment = Attachment("test.txt", "text/plain", "hello world".toByteStringUtf8())
+        val encrypted = RemoteAttachment.encodeEncrypted(attachment, AttachmentCodec())
+        val tampered = encrypted.copy(contentDigest = "00".repeat(32))
+        val destination = File(folder.root, "test.txt")
+
+        Assert.assertThrows(XMTPException::class.java) {
+            remoteAttachment(tampered).loadAttachmentToFile(destination)
+        }
+        Assert.assertFalse(destination.exists())
+    }
 }
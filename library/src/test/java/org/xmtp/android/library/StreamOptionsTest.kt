@@ -0,0 +1,117 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class StreamOptionsTest {
+    private fun burst(
+        options: StreamOptions,
+        events: List<Pair<String, Int>>,
+        closeWhenSent: Boolean = false,
+    ): Flow<Pair<String, Int>> =
+        callbackFlow {
+            val sink = StreamSink<Pair<String, Int>>(this, options) { it.first }
+            events.forEach { sink.send(it) }
+            if (closeWhenSent) close()
+            awaitClose { sink.close() }
+        }.withStreamOptions(options)
+
+    @Test
+    fun testSuspendPolicyDeliversEverything() {
+        val metrics = StreamMetrics()
+        val options =
+            StreamOptions(
+                bufferCapacity = 2,
+                overflowPolicy = StreamOverflowPolicy.SUSPEND,
+                metrics = metrics,
+            )
+        val events = (0 until 10).map { "a" to it }
+
+        val received =
+            runBlocking {
+                burst(options, events, closeWhenSent = true).flowOn(Dispatchers.IO).toList()
+            }
+
+        assertEquals(events, received)
+        assertEquals(10L, metrics.delivered)
+        assertEquals(0L, metrics.dropped)
+    }
+
+    @Test
+    fun testDefaultPolicyDropsNewEventsWithoutBlocking() {
+        val metrics = StreamMetrics()
+        val options = StreamOptions(bufferCapacity = 3, metrics = metrics)
+        val events = (0 until 10).map { "a" to it }
+
+        // Sent from the collector's own thread, so blocking on the full buffer would deadlock.
+        val received = runBlocking { burst(options, events, closeWhenSent = true).toList() }
+
+        assertEquals(StreamOverflowPolicy.DROP_LATEST, options.overflowPolicy)
+        assertEquals(events.take(3), received)
+        assertEquals(3L, metrics.delivered)
+        assertEquals(7L, metrics.dropped)
+    }
+
+    @Test
+    fun testDropOldestKeepsNewestEvents() {
+        val metrics = StreamMetrics()
+        val options =
+            StreamOptions(
+                bufferCapacity = 3,
+                overflowPolicy = StreamOverflowPolicy.DROP_OLDEST,
+                metrics = metrics,
+            )
+        val events = (0 until 10).map { "a" to it }
+
+        val received = runBlocking { burst(options, events).take(3).toList() }
+
+        assertEquals(listOf("a" to 7, "a" to 8, "a" to 9), received)
+        assertEquals(3L, metrics.delivered)
+        assertEquals(7L, metrics.dropped)
+    }
+
+    @Test
+    fun testConflateKeepsNewestEventPerConversation() {
+        val metrics = StreamMetrics()
+        val options =
+            StreamOptions(
+                bufferCapacity = 3,
+                overflowPolicy = StreamOverflowPolicy.CONFLATE_PER_CONVERSATION,
+                metrics = metrics,
+            )
+        val events = listOf("a" to 1, "b" to 1, "a" to 2, "c" to 1, "a" to 3, "d" to 1)
+
+        val received = runBlocking { burst(options, events).take(3).toList() }
+
+        // "a" was the busiest conversation, so its newest event survives the overflow.
+        assertEquals(listOf("c" to 1, "a" to 3, "d" to 1), received)
+        assertEquals(3L, metrics.dropped)
+    }
+
+    @Test
+    fun testSuspendPolicyCountsEventsSentAfterClose() {
+        val metrics = StreamMetrics()
+        val options = StreamOptions(overflowPolicy = StreamOverflowPolicy.SUSPEND, metrics = metrics)
+
+        val received =
+            runBlocking {
+                callbackFlow {
+                    val sink = StreamSink<Pair<String, Int>>(this, options) { it.first }
+                    close()
+                    sink.send("a" to 1)
+                    awaitClose { sink.close() }
+                }.withStreamOptions(options).toList()
+            }
+
+        assertEquals(emptyList<Pair<String, Int>>(), received)
+        assertEquals(1L, metrics.dropped)
+    }
+}
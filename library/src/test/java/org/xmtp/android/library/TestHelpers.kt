@@ -3,8 +3,12 @@ package org.xmtp.android.library
 import androidx.test.platform.app.InstrumentationRegistry
 import kotlinx.coroutines.runBlocking
 import org.xmtp.android.library.codecs.Fetcher
+import org.xmtp.android.library.codecs.TextCodec
 import org.xmtp.android.library.messages.PrivateKey
 import org.xmtp.android.library.messages.PrivateKeyBuilder
+import uniffi.xmtpv3.FfiConversationMessageKind
+import uniffi.xmtpv3.FfiDeliveryStatus
+import uniffi.xmtpv3.FfiMessage
 import java.io.File
 import java.net.URL
 import java.security.SecureRandom
@@ -39,3 +43,24 @@ data class Fixtures(
 }
 
 fun fixtures(): Fixtures = Fixtures()
+
+fun textFfiMessage(
+    text: String,
+    id: ByteArray = SecureRandom().generateSeed(32),
+    conversationId: ByteArray = ByteArray(32) { 1 },
+    deliveryStatus: FfiDeliveryStatus = FfiDeliveryStatus.PUBLISHED,
+    sentAtNs: Long = System.currentTimeMillis() * 1_000_000,
+): FfiMessage =
+    FfiMessage(
+        id = id,
+        sentAtNs = sentAtNs,
+        conversationId = conversationId,
+        senderInboxId = "sender",
+        content = TextCodec().encode(text).toByteArray(),
+        kind = FfiConversationMessageKind.APPLICATION,
+        deliveryStatus = deliveryStatus,
+        sequenceId = 0u,
+        originatorId = 0u,
+        insertedAtNs = sentAtNs,
+        expireAtNs = null,
+    )
@@ -0,0 +1,40 @@
+package org.xmtp.android.library
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.xmtp.android.library.fake.FakeXmtpBackend
+
+class TopicTest {
+    @Test
+    fun testParsesWhatDescriptionBuilds() {
+        val groupId = "8a3b1c2d4e5f60718293a4b5c6d7e8f9"
+
+        assertEquals(Topic.groupMessage(groupId), Topic.parse(Topic.groupMessage(groupId).description))
+        assertEquals(Topic.userWelcome("abc123"), Topic.parse(Topic.userWelcome("abc123").description))
+    }
+
+    @Test
+    fun testRejectsOtherTopics() {
+        assertNull(Topic.parse(""))
+        assertNull(Topic.parse("/xmtp/mls/1/g-/protobuf"))
+        assertNull(Topic.parse("/xmtp/mls/1/x-abc/proto"))
+        assertNull(Topic.parse("/xmtp/mls/1/g/proto"))
+        assertNull(Topic.parse("/xmtp/0/invite-abc/proto"))
+    }
+
+    @Test
+    fun testFindsConversationsByTopic() {
+        val backend = FakeXmtpBackend()
+        val client = backend.client()
+        val conversationId = backend.createConversation().id().toHex()
+
+        runBlocking {
+            val found = client.conversations.findConversationByTopic(Topic.groupMessage(conversationId).description)
+            assertEquals(conversationId, found?.id)
+            assertNull(client.conversations.findConversationByTopic(Topic.groupMessage("abcd").description))
+            assertNull(client.conversations.findConversationByTopic(Topic.userWelcome(conversationId).description))
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.xmtp.android.library.benchmark
+
+import com.google.protobuf.kotlin.toByteString
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.codecs.Attachment
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.ContentCodec
+import org.xmtp.android.library.codecs.ContentTypeText
+import org.xmtp.android.library.codecs.EncodedContent
+import org.xmtp.android.library.codecs.GroupUpdatedCodec
+import org.xmtp.android.library.codecs.Reaction
+import org.xmtp.android.library.codecs.ReactionAction
+import org.xmtp.android.library.codecs.ReactionCodec
+import org.xmtp.android.library.codecs.ReactionSchema
+import org.xmtp.android.library.codecs.ReadReceipt
+import org.xmtp.android.library.codecs.ReadReceiptCodec
+import org.xmtp.android.library.codecs.RemoteAttachment
+import org.xmtp.android.library.codecs.RemoteAttachmentCodec
+import org.xmtp.android.library.codecs.Reply
+import org.xmtp.android.library.codecs.ReplyCodec
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.proto.mls.message.contents.TranscriptMessages
+import java.net.URL
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Encode and decode cost of the codecs in `org.xmtp.android.library.codecs` that are implemented
+ * in Kotlin. Run with the gc profiler (the `jmh` task's default) to get allocations per op.
+ *
+ * Codecs that delegate to libxmtp (ReactionV2, MultiRemoteAttachment, TransactionReference,
+ * DeleteMessage, LeaveRequest) need the native library and are not covered here.
+ *
+ * `./gradlew library:jmh -Pjmh.include=CodecBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CodecBenchmark {
+    @Param("text", "reaction", "reply", "readReceipt", "attachment", "remoteAttachment", "groupUpdated")
+    @JvmField
+    var codecName: String = ""
+
+    private lateinit var codec: ContentCodec<Any>
+    private lateinit var content: Any
+    private lateinit var encoded: EncodedContent
+
+    @Setup
+    @Suppress("UNCHECKED_CAST")
+    fun setUp() {
+        val random = Random(42)
+        val (codec, content) =
+            when (codecName) {
+                "text" -> TextCodec() to "See you at 7 — bring the slides"
+                "reaction" ->
+                    ReactionCodec() to
+                        Reaction(
+                            reference = "8a3b1c2d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9",
+                            action = ReactionAction.Added,
+                            content = "👍",
+                            schema = ReactionSchema.Unicode,
+                        )
+                "reply" ->
+                    ReplyCodec() to
+                        Reply(
+                            reference = "8a3b1c2d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9",
+                            content = "Sounds good",
+                            contentType = ContentTypeText,
+                        )
+                "readReceipt" -> ReadReceiptCodec() to ReadReceipt
+                "attachment" ->
+                    AttachmentCodec() to
+                        Attachment("photo.jpg", "image/jpeg", random.nextBytes(64 * 1024).toByteString())
+                "remoteAttachment" ->
+                    RemoteAttachmentCodec() to
+                        RemoteAttachment(
+                            url = URL("https://example.com/attachments/photo.jpg"),
+                            contentDigest = "a".repeat(64),
+                            secret = random.nextBytes(32).toByteString(),
+                            salt = random.nextBytes(32).toByteString(),
+                            nonce = random.nextBytes(12).toByteString(),
+                            scheme = "https://",
+                            contentLength = 64 * 1024,
+                            filename = "photo.jpg",
+                        )
+                "groupUpdated" ->
+                    GroupUpdatedCodec() to
+                        TranscriptMessages.GroupUpdated
+                            .newBuilder()
+                            .setInitiatedByInboxId("a".repeat(64))
+                            .addAddedInboxes(
+                                TranscriptMessages.GroupUpdated.Inbox
+                                    .newBuilder()
+                                    .setInboxId("b".repeat(64))
+                                    .build(),
+                            ).build()
+                else -> error("Unknown codec $codecName")
+            }
+        this.codec = codec as ContentCodec<Any>
+        this.content = content
+        encoded = this.codec.encode(content)
+    }
+
+    @Benchmark
+    fun encode(): EncodedContent = codec.encode(content)
+
+    @Benchmark
+    fun decode(): Any? = codec.decode(encoded)
+}
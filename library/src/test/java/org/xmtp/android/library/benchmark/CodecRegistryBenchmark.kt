@@ -0,0 +1,97 @@
+package org.xmtp.android.library.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.CodecRegistry
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.ContentCodec
+import org.xmtp.android.library.codecs.ContentTypeId
+import org.xmtp.android.library.codecs.ContentTypeIdBuilder
+import org.xmtp.android.library.codecs.ContentTypeReaction
+import org.xmtp.android.library.codecs.ContentTypeText
+import org.xmtp.android.library.codecs.DeleteMessageCodec
+import org.xmtp.android.library.codecs.GroupUpdatedCodec
+import org.xmtp.android.library.codecs.MultiRemoteAttachmentCodec
+import org.xmtp.android.library.codecs.ReactionCodec
+import org.xmtp.android.library.codecs.ReactionV2Codec
+import org.xmtp.android.library.codecs.ReadReceiptCodec
+import org.xmtp.android.library.codecs.RemoteAttachmentCodec
+import org.xmtp.android.library.codecs.ReplyCodec
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.codecs.TransactionReferenceCodec
+import org.xmtp.android.library.codecs.id
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cost of one codec lookup, which happens for every decoded message.
+ *
+ * `constant` looks up a shared `ContentType*` instance (the send path), `parsed` an equal instance
+ * parsed from bytes (the decode path) and `unknown` a type without a codec. The `legacy*` variants
+ * replay the previous string-keyed map that built the key and a fallback [TextCodec] per call.
+ *
+ * `./gradlew library:jmh -Pjmh.include=CodecRegistryBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CodecRegistryBenchmark {
+    private val codecs: List<ContentCodec<*>> =
+        listOf(
+            TextCodec(),
+            ReactionCodec(),
+            ReactionV2Codec(),
+            ReplyCodec(),
+            ReadReceiptCodec(),
+            AttachmentCodec(),
+            RemoteAttachmentCodec(),
+            MultiRemoteAttachmentCodec(),
+            GroupUpdatedCodec(),
+            DeleteMessageCodec(),
+            TransactionReferenceCodec(),
+        )
+
+    private val registry = CodecRegistry()
+    private val legacy = mutableMapOf<String, ContentCodec<*>>()
+    private lateinit var parsed: ContentTypeId
+    private val unknown = ContentTypeIdBuilder.builderFromAuthorityId("example.com", "unknown", 1, 0)
+
+    @Setup
+    fun setUp() {
+        codecs.forEach {
+            registry.register(it)
+            legacy[it.contentType.id] = it
+        }
+        parsed = ContentTypeId.parseFrom(ContentTypeReaction.toByteArray())
+    }
+
+    @Benchmark
+    fun constant(): ContentCodec<*> = registry.find(ContentTypeText)
+
+    @Benchmark
+    fun parsed(): ContentCodec<*> = registry.find(parsed)
+
+    @Benchmark
+    fun unknown(): ContentCodec<*> = registry.find(unknown)
+
+    @Benchmark
+    fun legacyConstant(): ContentCodec<*> = legacyFind(ContentTypeText)
+
+    @Benchmark
+    fun legacyParsed(): ContentCodec<*> = legacyFind(parsed)
+
+    @Benchmark
+    fun legacyUnknown(): ContentCodec<*> = legacyFind(unknown)
+
+    private fun legacyFind(contentType: ContentTypeId): ContentCodec<*> = legacy[contentType.id] ?: TextCodec()
+}
@@ -0,0 +1,58 @@
+package org.xmtp.android.library.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.EncodedContentCompression
+import org.xmtp.android.library.codecs.EncodedContent
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.codecs.compress
+import org.xmtp.android.library.codecs.decompressContent
+import java.util.concurrent.TimeUnit
+
+/**
+ * [compress] and [decompressContent] on text payloads of a few sizes.
+ *
+ * `./gradlew library:jmh -Pjmh.include=CompressionBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CompressionBenchmark {
+    @Param("DEFLATE", "GZIP")
+    @JvmField
+    var compression: String = ""
+
+    @Param("1024", "65536")
+    @JvmField
+    var payloadSize: Int = 0
+
+    private lateinit var algorithm: EncodedContentCompression
+    private lateinit var plain: EncodedContent
+    private lateinit var compressed: EncodedContent
+
+    @Setup
+    fun setUp() {
+        algorithm = EncodedContentCompression.valueOf(compression)
+        val line = "The quick brown fox jumps over the lazy dog. "
+        plain = TextCodec().encode(line.repeat(payloadSize / line.length + 1).take(payloadSize))
+        compressed = plain.compress(algorithm)
+    }
+
+    @Benchmark
+    fun compress(): EncodedContent = plain.compress(algorithm)
+
+    @Benchmark
+    fun decompress(): EncodedContent = compressed.decompressContent()
+}
@@ -0,0 +1,82 @@
+package org.xmtp.android.library.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.Client
+import org.xmtp.android.library.Group
+import org.xmtp.android.library.fake.FakeFfiConversation
+import org.xmtp.android.library.fake.FakeXmtpBackend
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Sorting and de-duplicating a conversation list by its immutable properties, the way a list
+ * adapter keys and diffs it.
+ *
+ * Both cases read through the real [Group] accessors over the same fake FFI conversations.
+ * The `memoized` variants reuse one wrapper per conversation, as a loaded list does, so repeated
+ * reads hit the memoized values; the `freshWrapper` variants wrap the conversation again for
+ * every read, so every read crosses the FFI boundary and hex-encodes the ID again.
+ *
+ * `./gradlew library:jmh -Pjmh.include=ConversationListBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class ConversationListBenchmark {
+    @Param("5000")
+    @JvmField
+    var conversationCount: Int = 0
+
+    private lateinit var conversations: List<FakeFfiConversation>
+    private lateinit var client: Client
+    private lateinit var groups: List<Group>
+
+    @Setup
+    fun setUp() {
+        val backend = FakeXmtpBackend()
+        client = backend.client()
+        conversations = List(conversationCount) { backend.createConversation() }.shuffled(Random(0))
+        groups = conversations.map { Group(client, it) }
+        groups.forEach { it.topic }
+    }
+
+    private fun group(conversation: FakeFfiConversation): Group = Group(client, conversation)
+
+    @Benchmark
+    fun sortByIdFreshWrapper(): List<FakeFfiConversation> = conversations.sortedBy { group(it).id }
+
+    @Benchmark
+    fun sortByIdMemoized(): List<Group> = groups.sortedBy { it.id }
+
+    @Benchmark
+    fun sortByCreatedAtFreshWrapper(): List<FakeFfiConversation> =
+        conversations.sortedWith(
+            compareByDescending<FakeFfiConversation> { group(it).createdAtNs }.thenBy { group(it).id },
+        )
+
+    @Benchmark
+    fun sortByCreatedAtMemoized(): List<Group> =
+        groups.sortedWith(compareByDescending<Group> { it.createdAtNs }.thenBy { it.id })
+
+    @Benchmark
+    fun distinctTopicsFreshWrapper(): Int = conversations.mapTo(HashSet()) { group(it).topic }.size
+
+    @Benchmark
+    fun distinctTopicsMemoized(): Int = groups.mapTo(HashSet()) { it.topic }.size
+
+    @Benchmark
+    fun distinctGroupsMemoized(): Int = groups.toHashSet().size
+}
@@ -0,0 +1,78 @@
+package org.xmtp.android.library.benchmark
+
+import com.google.protobuf.kotlin.toByteString
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.CipherText
+import org.xmtp.android.library.Crypto
+import org.xmtp.android.library.codecs.Attachment
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.EncodedContent
+import org.xmtp.android.library.codecs.EncryptedEncodedContent
+import org.xmtp.android.library.codecs.RemoteAttachment
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * [Crypto.encrypt], [Crypto.decrypt] and [RemoteAttachment.decryptEncoded] (digest check, decrypt
+ * and parse) for attachment-sized payloads. The small sizes show per-message overhead: key
+ * derivation, cipher setup and random salts and nonces, which dominate batch attachment uploads.
+ *
+ * `./gradlew library:jmh -Pjmh.include=CryptoBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CryptoBenchmark {
+    @Param("64", "1024", "262144", "4194304")
+    @JvmField
+    var payloadSize: Int = 0
+
+    private val secret = Random(1).nextBytes(32)
+    private lateinit var payload: ByteArray
+    private lateinit var ciphertext: CipherText
+    private lateinit var attachment: Attachment
+    private lateinit var encryptedAttachment: EncryptedEncodedContent
+    private val codec = AttachmentCodec()
+
+    @Setup
+    fun setUp() {
+        payload = Random(42).nextBytes(payloadSize)
+        ciphertext = Crypto.encrypt(secret, payload)!!
+        attachment = Attachment("photo.jpg", "image/jpeg", payload.toByteString())
+        encryptedAttachment = RemoteAttachment.encodeEncrypted(attachment, codec)
+    }
+
+    @Benchmark
+    fun encrypt(): CipherText? = Crypto.encrypt(secret, payload)
+
+    @Benchmark
+    fun decrypt(): ByteArray? = Crypto.decrypt(secret, ciphertext)
+
+    @Benchmark
+    fun decryptByteBuffer(): ByteArray? =
+        Crypto.decrypt(
+            secret,
+            ciphertext.aes256GcmHkdfSha256.hkdfSalt.toByteArray(),
+            ciphertext.aes256GcmHkdfSha256.gcmNonce.toByteArray(),
+            ciphertext.aes256GcmHkdfSha256.payload.asReadOnlyByteBuffer(),
+        )
+
+    @Benchmark
+    fun encodeEncrypted(): EncryptedEncodedContent = RemoteAttachment.encodeEncrypted(attachment, codec)
+
+    @Benchmark
+    fun decryptEncoded(): EncodedContent = RemoteAttachment.decryptEncoded(encryptedAttachment)
+}
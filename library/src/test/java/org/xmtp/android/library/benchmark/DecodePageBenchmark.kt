@@ -0,0 +1,109 @@
+package org.xmtp.android.library.benchmark
+
+import com.google.protobuf.kotlin.toByteString
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.xmtp.android.library.Client
+import org.xmtp.android.library.DecodeOptions
+import org.xmtp.android.library.EncodedContentCompression
+import org.xmtp.android.library.codecs.Attachment
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.EncodedContent
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.codecs.compress
+import org.xmtp.android.library.decodePage
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import org.xmtp.android.library.textFfiMessage
+import uniffi.xmtpv3.FfiMessage
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Decoding a full page of messages and reading every message's content, the workload of history
+ * export and search indexing, with the sequential default and with [DecodeOptions.parallel].
+ *
+ * `./gradlew library:jmh -Pjmh.include=DecodePageBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class DecodePageBenchmark {
+    @Param("100", "1000", "5000")
+    @JvmField
+    var pageSize: Int = 0
+
+    /** text: short text; compressed: gzipped 4 KB text; attachment: 16 KB inline attachment. */
+    @Param("text", "compressed", "attachment", "mixed")
+    @JvmField
+    var contentMix: String = ""
+
+    private lateinit var page: List<FfiMessage>
+    private val parallel = DecodeOptions.parallel()
+
+    @Setup
+    fun setUp() {
+        Client.register(AttachmentCodec())
+        val random = Random(42)
+        page =
+            List(pageSize) { index ->
+                val content =
+                    when (contentMix) {
+                        "text" -> text(index)
+                        "compressed" -> compressed(index)
+                        "attachment" -> attachment(random)
+                        else ->
+                            when (index % 20) {
+                                0 -> attachment(random)
+                                1, 2, 3 -> compressed(index)
+                                else -> text(index)
+                            }
+                    }
+                textFfiMessage("").copy(content = content.toByteArray())
+            }
+    }
+
+    @Benchmark
+    fun sequential(blackhole: Blackhole) = decodeAndRead(DecodeOptions(), blackhole)
+
+    @Benchmark
+    fun parallel(blackhole: Blackhole) = decodeAndRead(parallel, blackhole)
+
+    private fun decodeAndRead(
+        options: DecodeOptions,
+        blackhole: Blackhole,
+    ) {
+        val messages =
+            runBlocking {
+                page.decodePage(options, preload = { it.content<Any>() }) { DecodedMessage.create(it) }
+            }
+        messages.forEach { blackhole.consume(it.content<Any>()) }
+    }
+
+    private fun text(index: Int): EncodedContent = TextCodec().encode("message number $index")
+
+    private fun compressed(index: Int): EncodedContent =
+        TextCodec().encode("line $index of a long message\n".repeat(140)).compress(EncodedContentCompression.GZIP)
+
+    private fun attachment(random: Random): EncodedContent =
+        AttachmentCodec().encode(
+            Attachment(
+                filename = "photo.jpg",
+                mimeType = "image/jpeg",
+                data = random.nextBytes(16 * 1024).toByteString(),
+            ),
+        )
+}
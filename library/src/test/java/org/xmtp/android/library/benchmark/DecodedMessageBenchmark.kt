@@ -0,0 +1,72 @@
+package org.xmtp.android.library.benchmark
+
+import com.google.protobuf.kotlin.toByteString
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.Client
+import org.xmtp.android.library.codecs.Attachment
+import org.xmtp.android.library.codecs.AttachmentCodec
+import org.xmtp.android.library.codecs.Reaction
+import org.xmtp.android.library.codecs.ReactionAction
+import org.xmtp.android.library.codecs.ReactionCodec
+import org.xmtp.android.library.codecs.ReactionSchema
+import org.xmtp.android.library.codecs.TextCodec
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import org.xmtp.android.library.textFfiMessage
+import uniffi.xmtpv3.FfiMessage
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * [DecodedMessage.create] alone (what list screens that only show metadata pay) and followed by
+ * reading the content (what rendering the message pays).
+ *
+ * `./gradlew library:jmh -Pjmh.include=DecodedMessageBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class DecodedMessageBenchmark {
+    @Param("text", "reaction", "attachment")
+    @JvmField
+    var contentKind: String = ""
+
+    private lateinit var message: FfiMessage
+
+    @Setup
+    fun setUp() {
+        Client.register(ReactionCodec())
+        Client.register(AttachmentCodec())
+        val content =
+            when (contentKind) {
+                "text" -> TextCodec().encode("See you at 7 — bring the slides")
+                "reaction" ->
+                    ReactionCodec().encode(
+                        Reaction("8a3b1c2d4e5f6071", ReactionAction.Added, "👍", ReactionSchema.Unicode),
+                    )
+                else ->
+                    AttachmentCodec().encode(
+                        Attachment("photo.jpg", "image/jpeg", Random(42).nextBytes(64 * 1024).toByteString()),
+                    )
+            }
+        message = textFfiMessage("").copy(content = content.toByteArray())
+    }
+
+    @Benchmark
+    fun create(): DecodedMessage? = DecodedMessage.create(message)
+
+    @Benchmark
+    fun createAndReadContent(): Any? = DecodedMessage.create(message)?.content<Any>()
+}
@@ -0,0 +1,80 @@
+package org.xmtp.android.library.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.xmtp.android.library.libxmtp.DecodedMessageV2
+import uniffi.xmtpv3.FfiDecodedMessage
+import java.util.concurrent.TimeUnit
+
+/**
+ * Binding a page of enriched messages the way a list adapter does: every visible message is
+ * bound several times (initial layout, diff, rebind on scroll) and each bind reads the id,
+ * content type, content and reactions.
+ *
+ * Both cases read through the real [DecodedMessageV2] accessors over the same fake FFI messages.
+ * [memoized] wraps each message once per page load, as `enrichedMessages()` does, so later binds
+ * hit the memoized values; [freshWrapperPerBind] wraps it again for every bind, so every read
+ * crosses the FFI boundary and converts again. Compare their `gc.alloc.rate.norm` to see what
+ * reusing the wrapper saves per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class DecodedMessageV2Benchmark {
+    @Param("50", "200")
+    @JvmField
+    var pageSize: Int = 0
+
+    @Param("3")
+    @JvmField
+    var bindsPerMessage: Int = 0
+
+    private lateinit var page: List<FfiDecodedMessage>
+
+    @Setup
+    fun setUp() {
+        page = List(pageSize) { FakeFfiDecodedMessage.text(it, reactionCount = if (it % 5 == 0) 2 else 0) }
+    }
+
+    @Benchmark
+    fun memoized(blackhole: Blackhole) {
+        // enrichedMessages() wraps every FFI message once per page load.
+        val messages = page.mapNotNull { DecodedMessageV2.create(it) }
+        repeat(bindsPerMessage) {
+            messages.forEach { bind(it, blackhole) }
+        }
+    }
+
+    @Benchmark
+    fun freshWrapperPerBind(blackhole: Blackhole) {
+        repeat(bindsPerMessage) {
+            page.forEach { ffiMessage ->
+                val message = DecodedMessageV2.create(ffiMessage)!!
+                bind(message, blackhole)
+            }
+        }
+    }
+
+    private fun bind(
+        message: DecodedMessageV2,
+        blackhole: Blackhole,
+    ) {
+        blackhole.consume(message.id)
+        blackhole.consume(message.contentTypeId)
+        blackhole.consume(message.content<Any>())
+        message.reactions.forEach { blackhole.consume(it.content<Any>()) }
+    }
+}
@@ -0,0 +1,93 @@
+package org.xmtp.android.library.benchmark
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.Client
+import org.xmtp.android.library.Conversation
+import org.xmtp.android.library.fake.FakeFfiConversation
+import org.xmtp.android.library.fake.FakeXmtpBackend
+import org.xmtp.android.library.fake.LoadGenerator
+import org.xmtp.android.library.libxmtp.DecodedMessage
+import java.util.concurrent.TimeUnit
+
+/**
+ * The SDK layer under load, served by [FakeXmtpBackend] so libxmtp and the network are out of
+ * the picture: listing the first page of a large inbox, and fanning a burst of [LoadGenerator]
+ * traffic out to `streamAllMessages` subscribers.
+ *
+ * The backend is rebuilt for every iteration so the messages delivered by [streamBurst] don't
+ * accumulate. Divide [messageCount] by the [streamBurst] time to get messages per second.
+ *
+ * `./gradlew library:jmh -Pjmh.include=FakeBackendBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class FakeBackendBenchmark {
+    @Param("500")
+    @JvmField
+    var conversationCount: Int = 0
+
+    @Param("20")
+    @JvmField
+    var messagesPerConversation: Int = 0
+
+    @Param("1000")
+    @JvmField
+    var messageCount: Int = 0
+
+    @Param("1", "3")
+    @JvmField
+    var subscriberCount: Int = 0
+
+    private lateinit var backend: FakeXmtpBackend
+    private lateinit var generator: LoadGenerator
+    private lateinit var client: Client
+    private lateinit var conversations: List<FakeFfiConversation>
+
+    @Setup(Level.Iteration)
+    fun setUp() {
+        backend = FakeXmtpBackend()
+        generator = LoadGenerator(backend, seed = 42)
+        client = backend.client()
+        conversations = generator.seed(conversationCount, messagesPerConversation)
+    }
+
+    @Benchmark
+    fun listFirstPage(): List<Conversation> = runBlocking { client.conversations.list(limit = 50) }
+
+    @Benchmark
+    fun streamBurst(): List<List<DecodedMessage>> =
+        runBlocking {
+            val subscribers =
+                List(subscriberCount) {
+                    async(Dispatchers.IO) { client.conversations.streamAllMessages().take(messageCount).toList() }
+                }
+            while (backend.messageStreamCount < subscriberCount) delay(1)
+            // One tick's worth of traffic covers the whole burst, so no pacing delay is measured.
+            generator.simulateTraffic(conversations, messageCount, messagesPerSecond = messageCount * 100)
+            subscribers.map { it.await() }.also {
+                // Let the finished streams unsubscribe so the next burst waits for its own.
+                while (backend.messageStreamCount > 0) delay(1)
+            }
+        }
+}
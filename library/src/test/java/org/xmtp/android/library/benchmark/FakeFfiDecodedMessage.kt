@@ -0,0 +1,98 @@
+package org.xmtp.android.library.benchmark
+
+import uniffi.xmtpv3.FfiContentTypeId
+import uniffi.xmtpv3.FfiDecodedMessage
+import uniffi.xmtpv3.FfiDecodedMessageContent
+import uniffi.xmtpv3.FfiDeliveryStatus
+import uniffi.xmtpv3.FfiGroupMessageKind
+import uniffi.xmtpv3.FfiReactionAction
+import uniffi.xmtpv3.FfiReactionPayload
+import uniffi.xmtpv3.FfiReactionSchema
+import uniffi.xmtpv3.FfiTextContent
+import uniffi.xmtpv3.NoPointer
+
+/**
+ * An [FfiDecodedMessage] that is not backed by a Rust object, so enriched messages can be
+ * exercised on the JVM without loading libxmtp.
+ */
+class FakeFfiDecodedMessage(
+    private val messageId: ByteArray,
+    private val messageContent: FfiDecodedMessageContent,
+    private val messageContentTypeId: FfiContentTypeId,
+    private val messageReactions: List<FfiDecodedMessage> = emptyList(),
+    private val messageConversationId: ByteArray = ByteArray(32) { 1 },
+    private val messageSentAtNs: Long = 0,
+) : FfiDecodedMessage(NoPointer) {
+    override fun id(): ByteArray = messageId
+
+    override fun conversationId(): ByteArray = messageConversationId
+
+    override fun content(): FfiDecodedMessageContent = messageContent
+
+    override fun contentTypeId(): FfiContentTypeId = messageContentTypeId
+
+    override fun reactions(): List<FfiDecodedMessage> = messageReactions
+
+    override fun hasReactions(): Boolean = messageReactions.isNotEmpty()
+
+    override fun reactionCount(): ULong = messageReactions.size.toULong()
+
+    override fun senderInboxId(): String = "sender"
+
+    override fun sentAtNs(): Long = messageSentAtNs
+
+    override fun insertedAtNs(): Long = messageSentAtNs
+
+    override fun expiresAtNs(): Long? = null
+
+    override fun deliveryStatus(): FfiDeliveryStatus = FfiDeliveryStatus.PUBLISHED
+
+    override fun kind(): FfiGroupMessageKind = FfiGroupMessageKind.APPLICATION
+
+    override fun fallbackText(): String? = null
+
+    override fun numReplies(): ULong = 0u
+
+    override fun senderInstallationId(): ByteArray = ByteArray(32)
+
+    companion object {
+        private val TEXT_TYPE = FfiContentTypeId("xmtp.org", "text", 1u, 0u)
+        private val REACTION_TYPE = FfiContentTypeId("xmtp.org", "reaction", 2u, 0u)
+
+        fun text(
+            index: Int,
+            reactionCount: Int = 0,
+        ): FakeFfiDecodedMessage {
+            val id = messageId(index)
+            return FakeFfiDecodedMessage(
+                messageId = id,
+                messageContent = FfiDecodedMessageContent.Text(FfiTextContent("Message number $index")),
+                messageContentTypeId = TEXT_TYPE,
+                messageReactions = List(reactionCount) { reaction(index, it, id) },
+                messageSentAtNs = index.toLong(),
+            )
+        }
+
+        private fun reaction(
+            index: Int,
+            reactionIndex: Int,
+            reference: ByteArray,
+        ): FakeFfiDecodedMessage =
+            FakeFfiDecodedMessage(
+                messageId = messageId(index * 1_000 + reactionIndex + 1),
+                messageContent =
+                    FfiDecodedMessageContent.Reaction(
+                        FfiReactionPayload(
+                            reference = reference.joinToString("") { "%02x".format(it) },
+                            referenceInboxId = "sender",
+                            action = FfiReactionAction.ADDED,
+                            content = "👍",
+                            schema = FfiReactionSchema.UNICODE,
+                        ),
+                    ),
+                messageContentTypeId = REACTION_TYPE,
+            )
+
+        private fun messageId(index: Int): ByteArray = ByteArray(32) { (index shr (it % 4 * 8)).toByte() }
+    }
+}
@@ -0,0 +1,65 @@
+package org.xmtp.android.library.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.xmtp.android.library.MessageId
+import org.xmtp.android.library.hexToByteArray
+import org.xmtp.android.library.toHex
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * [toHex] and [hexToByteArray] at the sizes they see most: 32-byte message and conversation IDs,
+ * and longer keys and digests. `formatHex` is the previous `String.format` based encoder, and
+ * `messageIdLookup` keys a map by [MessageId] the way the decoded message cache does.
+ *
+ * `./gradlew library:jmh -Pjmh.include=HexBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class HexBenchmark {
+    @Param("32", "1024")
+    @JvmField
+    var byteCount: Int = 0
+
+    private lateinit var bytes: ByteArray
+    private lateinit var hex: String
+    private lateinit var ids: Map<MessageId, Int>
+
+    @Setup
+    fun setUp() {
+        bytes = Random(42).nextBytes(byteCount)
+        hex = bytes.toHex()
+        ids =
+            (0 until 1_000).associateBy { MessageId.of(Random(it).nextBytes(byteCount)) } +
+            (MessageId.of(bytes) to -1)
+    }
+
+    @Benchmark
+    fun toHex(): String = bytes.toHex()
+
+    @Benchmark
+    fun formatHex(): String = bytes.joinToString(separator = "") { "%02x".format(it) }
+
+    @Benchmark
+    fun hexToByteArray(): ByteArray = hex.hexToByteArray()
+
+    @Benchmark
+    fun messageIdLookup(blackhole: Blackhole) {
+        blackhole.consume(ids[MessageId.of(bytes)])
+    }
+}
@@ -0,0 +1,45 @@
+package org.xmtp.android.library.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.xmtp.android.library.Topic
+import java.util.concurrent.TimeUnit
+
+/**
+ * Building topic strings, done for every push subscription and every `DecodedMessage.topic` read,
+ * and extracting the group ID from a topic as `Conversations.findConversationByTopic` does, with
+ * [Topic.parse] and with the regex it used before.
+ *
+ * `./gradlew library:jmh -Pjmh.include=TopicBenchmark`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class TopicBenchmark {
+    private val groupId = "8a3b1c2d4e5f60718293a4b5c6d7e8f9"
+    private val topic = Topic.groupMessage(groupId).description
+
+    @Benchmark
+    fun groupMessageDescription(): String = Topic.groupMessage(groupId).description
+
+    @Benchmark
+    fun parseGroupId(): String? = (Topic.parse(topic) as? Topic.groupMessage)?.groupId
+
+    @Benchmark
+    fun parseGroupIdRegex(): String? =
+        """/xmtp/mls/1/g-(.*?)/proto"""
+            .toRegex()
+            .find(topic)
+            ?.groupValues
+            ?.get(1)
+}
@@ -0,0 +1,143 @@
+package org.xmtp.android.library.fake
+
+import uniffi.xmtpv3.FfiConsentState
+import uniffi.xmtpv3.FfiConversation
+import uniffi.xmtpv3.FfiConversationType
+import uniffi.xmtpv3.FfiDeliveryStatus
+import uniffi.xmtpv3.FfiDirection
+import uniffi.xmtpv3.FfiListMessagesOptions
+import uniffi.xmtpv3.FfiMessage
+import uniffi.xmtpv3.FfiMessageCallback
+import uniffi.xmtpv3.FfiSendMessageOpts
+import uniffi.xmtpv3.FfiSortBy
+import uniffi.xmtpv3.FfiStreamCloser
+import uniffi.xmtpv3.NoPointer
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * In-memory [FfiConversation] owned by a [FakeXmtpBackend].
+ *
+ * Covers the calls made when listing, paging, sending and streaming. Content type filters in
+ * [FfiListMessagesOptions] are ignored; calls that are not overridden still go to libxmtp and fail.
+ */
+class FakeFfiConversation internal constructor(
+    private val backend: FakeXmtpBackend,
+    private val conversationId: ByteArray,
+    private val type: FfiConversationType,
+    private val createdAt: Long,
+    @Volatile var name: String,
+    @Volatile var consent: FfiConsentState,
+    val peerInboxId: String?,
+) : FfiConversation(NoPointer) {
+    // Appended in sent order, since the backend clock only moves forward.
+    private val messages = ArrayList<FfiMessage>()
+    private val subscribers = CopyOnWriteArrayList<FfiMessageCallback>()
+
+    val messageCount: Int
+        get() = synchronized(messages) { messages.size }
+
+    val lastMessage: FfiMessage?
+        get() = synchronized(messages) { messages.lastOrNull() }
+
+    val lastActivityNs: Long
+        get() = lastMessage?.sentAtNs ?: createdAt
+
+    internal fun append(message: FfiMessage) {
+        synchronized(messages) { messages.add(message) }
+    }
+
+    internal fun notify(message: FfiMessage) {
+        subscribers.forEach { it.onMessage(message) }
+    }
+
+    internal fun closeStreams() {
+        subscribers.forEach { it.onClose() }
+        subscribers.clear()
+    }
+
+    private fun publish(filter: (FfiMessage) -> Boolean) {
+        val published =
+            synchronized(messages) {
+                messages.indices
+                    .filter { messages[it].deliveryStatus != FfiDeliveryStatus.PUBLISHED && filter(messages[it]) }
+                    .map { index ->
+                        messages[index].copy(deliveryStatus = FfiDeliveryStatus.PUBLISHED).also { messages[index] = it }
+                    }
+            }
+        published.forEach {
+            backend.record(it)
+            backend.deliver(this, it)
+        }
+    }
+
+    private fun query(opts: FfiListMessagesOptions): List<FfiMessage> {
+        val snapshot = synchronized(messages) { messages.toList() }
+        val byInsertedTime = opts.sortBy == FfiSortBy.INSERTED_AT
+        val matching =
+            snapshot.filter { message ->
+                (opts.sentBeforeNs?.let { message.sentAtNs < it } ?: true) &&
+                    (opts.sentAfterNs?.let { message.sentAtNs > it } ?: true) &&
+                    (opts.insertedBeforeNs?.let { message.insertedAtNs < it } ?: true) &&
+                    (opts.insertedAfterNs?.let { message.insertedAtNs > it } ?: true) &&
+                    (opts.deliveryStatus?.let { message.deliveryStatus == it } ?: true) &&
+                    (opts.excludeSenderInboxIds?.contains(message.senderInboxId) != true)
+            }
+        val sorted = matching.sortedBy { if (byInsertedTime) it.insertedAtNs else it.sentAtNs }
+        val ordered = if (opts.direction == FfiDirection.ASCENDING) sorted else sorted.asReversed()
+        return opts.limit?.let { ordered.take(it.toInt()) } ?: ordered
+    }
+
+    override fun id(): ByteArray = conversationId
+
+    override fun createdAtNs(): Long = createdAt
+
+    override fun conversationType(): FfiConversationType = type
+
+    override fun groupName(): String = name
+
+    override fun groupDescription(): String = ""
+
+    override fun groupImageUrlSquare(): String = ""
+
+    override fun consentState(): FfiConsentState = consent
+
+    override fun updateConsentState(state: FfiConsentState) {
+        consent = state
+    }
+
+    override fun isActive(): Boolean = true
+
+    override fun dmPeerInboxId(): String? = peerInboxId
+
+    override suspend fun sync() {}
+
+    override suspend fun leaveGroup() {}
+
+    override suspend fun findMessages(opts: FfiListMessagesOptions): List<FfiMessage> = query(opts)
+
+    override fun countMessages(opts: FfiListMessagesOptions): Long = query(opts.copy(limit = null)).size.toLong()
+
+    override suspend fun send(
+        contentBytes: ByteArray,
+        opts: FfiSendMessageOpts,
+    ): ByteArray = backend.addMessage(this, contentBytes, backend.localInboxId).id
+
+    override fun sendOptimistic(
+        contentBytes: ByteArray,
+        opts: FfiSendMessageOpts,
+    ): ByteArray = backend.addMessage(this, contentBytes, backend.localInboxId, FfiDeliveryStatus.UNPUBLISHED).id
+
+    override fun prepareMessage(
+        contentBytes: ByteArray,
+        shouldPush: Boolean,
+    ): ByteArray = backend.addMessage(this, contentBytes, backend.localInboxId, FfiDeliveryStatus.UNPUBLISHED).id
+
+    override suspend fun publishMessages() = publish { true }
+
+    override suspend fun publishStoredMessage(messageId: ByteArray) = publish { it.id.contentEquals(messageId) }
+
+    override suspend fun stream(messageCallback: FfiMessageCallback): FfiStreamCloser {
+        subscribers.add(messageCallback)
+        return FakeFfiStreamCloser { subscribers.remove(messageCallback) }
+    }
+}
@@ -0,0 +1,17 @@
+package org.xmtp.android.library.fake
+
+import uniffi.xmtpv3.FfiConversation
+import uniffi.xmtpv3.FfiConversationListItem
+import uniffi.xmtpv3.FfiMessage
+import uniffi.xmtpv3.NoPointer
+
+class FakeFfiConversationListItem(
+    private val conversation: FakeFfiConversation,
+    private val lastMessage: FfiMessage?,
+) : FfiConversationListItem(NoPointer) {
+    override fun conversation(): FfiConversation = conversation
+
+    override fun lastMessage(): FfiMessage? = lastMessage
+
+    override fun isCommitLogForked(): Boolean? = false
+}
@@ -0,0 +1,118 @@
+package org.xmtp.android.library.fake
+
+import uniffi.xmtpv3.FfiConsentCallback
+import uniffi.xmtpv3.FfiConsentState
+import uniffi.xmtpv3.FfiConversationCallback
+import uniffi.xmtpv3.FfiConversationListItem
+import uniffi.xmtpv3.FfiConversationType
+import uniffi.xmtpv3.FfiConversations
+import uniffi.xmtpv3.FfiGroupQueryOrderBy
+import uniffi.xmtpv3.FfiGroupSyncSummary
+import uniffi.xmtpv3.FfiListConversationsOptions
+import uniffi.xmtpv3.FfiMessageCallback
+import uniffi.xmtpv3.FfiMessageDeletionCallback
+import uniffi.xmtpv3.FfiPreferenceCallback
+import uniffi.xmtpv3.FfiStreamCloser
+import uniffi.xmtpv3.NoPointer
+
+/**
+ * In-memory [FfiConversations] over the conversations of a [FakeXmtpBackend].
+ *
+ * Consent and preference streams are accepted but never emit.
+ */
+class FakeFfiConversations internal constructor(
+    private val backend: FakeXmtpBackend,
+) : FfiConversations(NoPointer) {
+    private fun query(
+        opts: FfiListConversationsOptions,
+        type: FfiConversationType?,
+    ): List<FfiConversationListItem> {
+        val matching =
+            backend.conversations.filter { conversation ->
+                (type == null || conversation.conversationType() == type) &&
+                    (opts.consentStates?.contains(conversation.consent) ?: true) &&
+                    (opts.createdAfterNs?.let { conversation.createdAtNs() > it } ?: true) &&
+                    (opts.createdBeforeNs?.let { conversation.createdAtNs() < it } ?: true) &&
+                    (opts.lastActivityAfterNs?.let { conversation.lastActivityNs > it } ?: true) &&
+                    (opts.lastActivityBeforeNs?.let { conversation.lastActivityNs < it } ?: true)
+            }
+        val ordered =
+            when (opts.orderBy) {
+                FfiGroupQueryOrderBy.CREATED_AT -> matching.sortedByDescending { it.createdAtNs() }
+                else -> matching.sortedByDescending { it.lastActivityNs }
+            }
+        val limited = opts.limit?.let { ordered.take(it.toInt()) } ?: ordered
+        return limited.map { FakeFfiConversationListItem(it, it.lastMessage) }
+    }
+
+    private fun subscribeMessages(
+        callback: FfiMessageCallback,
+        type: FfiConversationType?,
+        consentStates: List<FfiConsentState>?,
+    ): FfiStreamCloser {
+        val subscription = FakeXmtpBackend.MessageSubscription(callback, type, consentStates)
+        backend.messageSubscriptions.add(subscription)
+        return FakeFfiStreamCloser { backend.messageSubscriptions.remove(subscription) }
+    }
+
+    private fun subscribeConversations(
+        callback: FfiConversationCallback,
+        type: FfiConversationType?,
+    ): FfiStreamCloser {
+        val subscription = FakeXmtpBackend.ConversationSubscription(callback, type)
+        backend.conversationSubscriptions.add(subscription)
+        return FakeFfiStreamCloser { backend.conversationSubscriptions.remove(subscription) }
+    }
+
+    override fun list(opts: FfiListConversationsOptions): List<FfiConversationListItem> = query(opts, null)
+
+    override fun listGroups(opts: FfiListConversationsOptions): List<FfiConversationListItem> =
+        query(opts, FfiConversationType.GROUP)
+
+    override fun listDms(opts: FfiListConversationsOptions): List<FfiConversationListItem> =
+        query(opts, FfiConversationType.DM)
+
+    override suspend fun sync() {}
+
+    override suspend fun syncAllConversations(consentStates: List<FfiConsentState>?): FfiGroupSyncSummary {
+        val count = backend.conversations.size.toULong()
+        return FfiGroupSyncSummary(numEligible = count, numSynced = count)
+    }
+
+    override suspend fun stream(callback: FfiConversationCallback): FfiStreamCloser =
+        subscribeConversations(callback, null)
+
+    override suspend fun streamGroups(callback: FfiConversationCallback): FfiStreamCloser =
+        subscribeConversations(callback, FfiConversationType.GROUP)
+
+    override suspend fun streamDms(callback: FfiConversationCallback): FfiStreamCloser =
+        subscribeConversations(callback, FfiConversationType.DM)
+
+    override suspend fun streamAllMessages(
+        messageCallback: FfiMessageCallback,
+        consentStates: List<FfiConsentState>?,
+    ): FfiStreamCloser = subscribeMessages(messageCallback, null, consentStates)
+
+    override suspend fun streamAllGroupMessages(
+        messageCallback: FfiMessageCallback,
+        consentStates: List<FfiConsentState>?,
+    ): FfiStreamCloser = subscribeMessages(messageCallback, FfiConversationType.GROUP, consentStates)
+
+    override suspend fun streamAllDmMessages(
+        messageCallback: FfiMessageCallback,
+        consentStates: List<FfiConsentState>?,
+    ): FfiStreamCloser = subscribeMessages(messageCallback, FfiConversationType.DM, consentStates)
+
+    override suspend fun streamMessages(
+        messageCallback: FfiMessageCallback,
+        conversationType: FfiConversationType?,
+        consentStates: List<FfiConsentState>?,
+    ): FfiStreamCloser = subscribeMessages(messageCallback, conversationType, consentStates)
+
+    override suspend fun streamMessageDeletions(callback: FfiMessageDeletionCallback): FfiStreamCloser =
+        FakeFfiStreamCloser()
+
+    override suspend fun streamConsent(callback: FfiConsentCallback): FfiStreamCloser = FakeFfiStreamCloser()
+
+    override suspend fun streamPreferences(callback: FfiPreferenceCallback): FfiStreamCloser = FakeFfiStreamCloser()
+}
@@ -0,0 +1,24 @@
+package org.xmtp.android.library.fake
+
+import uniffi.xmtpv3.FfiStreamCloser
+import uniffi.xmtpv3.NoPointer
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * [FfiStreamCloser] that runs [onEnd] once, the first time the stream is ended.
+ */
+class FakeFfiStreamCloser(
+    private val onEnd: () -> Unit = {},
+) : FfiStreamCloser(NoPointer) {
+    private val closed = AtomicBoolean(false)
+
+    override fun end() {
+        if (closed.compareAndSet(false, true)) onEnd()
+    }
+
+    override suspend fun endAndWait() = end()
+
+    override fun isClosed(): Boolean = closed.get()
+
+    override suspend fun waitForReady() {}
+}
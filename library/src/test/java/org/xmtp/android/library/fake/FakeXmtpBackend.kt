@@ -0,0 +1,199 @@
+package org.xmtp.android.library.fake
+
+import org.xmtp.android.library.Client
+import org.xmtp.android.library.XMTPEnvironment
+import org.xmtp.android.library.libxmtp.IdentityKind
+import org.xmtp.android.library.libxmtp.PublicIdentity
+import org.xmtp.android.library.toHex
+import uniffi.xmtpv3.FfiConsentState
+import uniffi.xmtpv3.FfiConversation
+import uniffi.xmtpv3.FfiConversationCallback
+import uniffi.xmtpv3.FfiConversationMessageKind
+import uniffi.xmtpv3.FfiConversationType
+import uniffi.xmtpv3.FfiConversations
+import uniffi.xmtpv3.FfiDeliveryStatus
+import uniffi.xmtpv3.FfiMessage
+import uniffi.xmtpv3.FfiMessageCallback
+import uniffi.xmtpv3.FfiXmtpClient
+import uniffi.xmtpv3.GenericException
+import uniffi.xmtpv3.NoPointer
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.random.Random
+
+/**
+ * In-memory replacement for libxmtp and the network, for measuring the SDK layer offline.
+ *
+ * Conversations and messages live in memory and streams are delivered synchronously on the thread
+ * that adds a message, the way libxmtp invokes callbacks from its own threads. Timestamps come from
+ * a clock that advances one microsecond per event, and IDs from [random], so a seeded backend
+ * produces the same data on every run.
+ *
+ * Use [client] to get a [Client] whose conversations, streams and sends are served from here, and
+ * [LoadGenerator] to seed data and simulate traffic.
+ *
+ * @param localInboxId The inbox ID of the [client] user, recorded as the sender of its messages.
+ */
+class FakeXmtpBackend(
+    val localInboxId: String = "local-inbox",
+    private val random: Random = Random(0),
+    startNs: Long = System.currentTimeMillis() * 1_000_000,
+) {
+    internal class MessageSubscription(
+        val callback: FfiMessageCallback,
+        val type: FfiConversationType?,
+        val consentStates: List<FfiConsentState>?,
+    )
+
+    internal class ConversationSubscription(
+        val callback: FfiConversationCallback,
+        val type: FfiConversationType?,
+    )
+
+    private val clockNs = AtomicLong(startNs)
+    private val conversationsById = ConcurrentHashMap<ByteBuffer, FakeFfiConversation>()
+    private val messagesById = ConcurrentHashMap<ByteBuffer, FfiMessage>()
+    internal val messageSubscriptions = CopyOnWriteArrayList<MessageSubscription>()
+    internal val conversationSubscriptions = CopyOnWriteArrayList<ConversationSubscription>()
+
+    val conversations: List<FakeFfiConversation>
+        get() = conversationsById.values.toList()
+
+    val messageCount: Int
+        get() = messagesById.size
+
+    /** Number of open `streamAllMessages`-style subscriptions. */
+    val messageStreamCount: Int
+        get() = messageSubscriptions.size
+
+    internal fun nextTimestampNs(): Long = clockNs.addAndGet(1_000)
+
+    internal fun randomId(): ByteArray = synchronized(random) { random.nextBytes(32) }
+
+    fun createConversation(
+        type: FfiConversationType = FfiConversationType.GROUP,
+        name: String = "",
+        consent: FfiConsentState = FfiConsentState.ALLOWED,
+        peerInboxId: String? = null,
+    ): FakeFfiConversation {
+        val conversation =
+            FakeFfiConversation(
+                backend = this,
+                conversationId = randomId(),
+                type = type,
+                createdAt = nextTimestampNs(),
+                name = name,
+                consent = consent,
+                peerInboxId =
+                    peerInboxId ?: if (type == FfiConversationType.DM) "peer-${conversationsById.size}" else null,
+            )
+        conversationsById[ByteBuffer.wrap(conversation.id())] = conversation
+        conversationSubscriptions
+            .filter { it.type == null || it.type == type }
+            .forEach { it.callback.onConversation(conversation) }
+        return conversation
+    }
+
+    /**
+     * Stores a message in [conversation] and, once it is published, delivers it to the open streams.
+     */
+    fun addMessage(
+        conversation: FakeFfiConversation,
+        content: ByteArray,
+        senderInboxId: String,
+        deliveryStatus: FfiDeliveryStatus = FfiDeliveryStatus.PUBLISHED,
+    ): FfiMessage {
+        val timestampNs = nextTimestampNs()
+        val message =
+            FfiMessage(
+                id = randomId(),
+                sentAtNs = timestampNs,
+                conversationId = conversation.id(),
+                senderInboxId = senderInboxId,
+                content = content,
+                kind = FfiConversationMessageKind.APPLICATION,
+                deliveryStatus = deliveryStatus,
+                sequenceId = 0u,
+                originatorId = 0u,
+                insertedAtNs = timestampNs,
+                expireAtNs = null,
+            )
+        conversation.append(message)
+        record(message)
+        if (deliveryStatus == FfiDeliveryStatus.PUBLISHED) deliver(conversation, message)
+        return message
+    }
+
+    internal fun record(message: FfiMessage) {
+        messagesById[ByteBuffer.wrap(message.id)] = message
+    }
+
+    internal fun deliver(
+        conversation: FakeFfiConversation,
+        message: FfiMessage,
+    ) {
+        conversation.notify(message)
+        messageSubscriptions.forEach { subscription ->
+            if ((subscription.type == null || subscription.type == conversation.conversationType()) &&
+                (subscription.consentStates?.contains(conversation.consent) ?: true)
+            ) {
+                subscription.callback.onMessage(message)
+            }
+        }
+    }
+
+    /**
+     * Closes every open stream from the backend side, as when the connection to a node drops.
+     */
+    fun closeStreams() {
+        messageSubscriptions.forEach { it.callback.onClose() }
+        messageSubscriptions.clear()
+        conversationSubscriptions.forEach { it.callback.onClose() }
+        conversationSubscriptions.clear()
+        conversationsById.values.forEach { it.closeStreams() }
+    }
+
+    internal fun conversation(id: ByteArray): FakeFfiConversation? = conversationsById[ByteBuffer.wrap(id)]
+
+    internal fun message(id: ByteArray): FfiMessage? = messagesById[ByteBuffer.wrap(id)]
+
+    /**
+     * A [Client] for [localInboxId] backed by this in-memory backend.
+     */
+    fun client(): Client {
+        val installationId = randomId()
+        return Client(
+            libXMTPClient = FakeFfiXmtpClient(this, installationId),
+            dbPath = "",
+            installationId = installationId.toHex(),
+            inboxId = localInboxId,
+            environment = XMTPEnvironment.LOCAL,
+            publicIdentity = PublicIdentity(IdentityKind.ETHEREUM, "0x0000000000000000000000000000000000000000"),
+        )
+    }
+
+    private class FakeFfiXmtpClient(
+        private val backend: FakeXmtpBackend,
+        private val installationId: ByteArray,
+    ) : FfiXmtpClient(NoPointer) {
+        private val conversations = FakeFfiConversations(backend)
+
+        override fun conversations(): FfiConversations = conversations
+
+        override fun inboxId(): String = backend.localInboxId
+
+        override fun installationId(): ByteArray = installationId
+
+        override fun conversation(conversationId: ByteArray): FfiConversation =
+            backend.conversation(conversationId) ?: throw GenericException.Client("Conversation not found")
+
+        override fun dmConversation(targetInboxId: String): FfiConversation =
+            backend.conversations.firstOrNull { it.peerInboxId == targetInboxId }
+                ?: throw GenericException.Client("DM not found")
+
+        override fun message(messageId: ByteArray): FfiMessage =
+            backend.message(messageId) ?: throw GenericException.Client("Message not found")
+    }
+}
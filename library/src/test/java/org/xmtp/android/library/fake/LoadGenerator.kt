@@ -0,0 +1,83 @@
+package org.xmtp.android.library.fake
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import org.xmtp.android.library.codecs.TextCodec
+import uniffi.xmtpv3.FfiConversationType
+import kotlin.coroutines.coroutineContext
+import kotlin.random.Random
+
+/**
+ * Seeds a [FakeXmtpBackend] and simulates incoming message traffic against it.
+ *
+ * Everything is driven by a seeded [Random], so a given seed, conversation count and message
+ * count produce the same data and the same traffic order on every run.
+ *
+ * @param content Encoded content for the n-th generated message. Defaults to short text.
+ */
+class LoadGenerator(
+    private val backend: FakeXmtpBackend,
+    seed: Long = 0,
+    private val content: (Int) -> ByteArray = { TextCodec().encode("message $it").toByteArray() },
+) {
+    private val random = Random(seed)
+    private var generated = 0
+
+    /**
+     * Creates [conversationCount] conversations, a [dmRatio] share of them DMs, each holding
+     * [messagesPerConversation] messages from a handful of senders.
+     */
+    fun seed(
+        conversationCount: Int,
+        messagesPerConversation: Int,
+        dmRatio: Double = 0.3,
+        senderCount: Int = 5,
+    ): List<FakeFfiConversation> {
+        val conversations =
+            List(conversationCount) { index ->
+                val type = if (random.nextDouble() < dmRatio) FfiConversationType.DM else FfiConversationType.GROUP
+                backend.createConversation(type = type, name = "Conversation $index")
+            }
+        // Interleave conversations so last-activity order differs from creation order.
+        repeat(messagesPerConversation) {
+            conversations.shuffled(random).forEach { conversation ->
+                backend.addMessage(conversation, content(generated++), "sender-${random.nextInt(senderCount)}")
+            }
+        }
+        return conversations
+    }
+
+    /**
+     * Delivers [messageCount] messages to [conversations] at roughly [messagesPerSecond], in ticks of
+     * [tickMs]. A [hotShare] of the traffic goes to the first [hotConversations] conversations, the
+     * way a few busy groups dominate real traffic. Returns the number of messages delivered.
+     */
+    suspend fun simulateTraffic(
+        conversations: List<FakeFfiConversation>,
+        messageCount: Int,
+        messagesPerSecond: Int,
+        hotConversations: Int = 10,
+        hotShare: Double = 0.8,
+        tickMs: Long = 10,
+        senderCount: Int = 5,
+    ): Int {
+        require(conversations.isNotEmpty()) { "conversations must not be empty" }
+        require(messagesPerSecond > 0) { "messagesPerSecond must be greater than 0" }
+        val hot = conversations.take(hotConversations.coerceIn(1, conversations.size))
+        val perTick = messagesPerSecond * tickMs / 1_000.0
+        var owed = 0.0
+        var delivered = 0
+        while (delivered < messageCount) {
+            coroutineContext.ensureActive()
+            owed += perTick
+            while (owed >= 1 && delivered < messageCount) {
+                val target = if (random.nextDouble() < hotShare) hot.random(random) else conversations.random(random)
+                backend.addMessage(target, content(generated++), "sender-${random.nextInt(senderCount)}")
+                delivered++
+                owed--
+            }
+            if (delivered < messageCount) delay(tickMs)
+        }
+        return delivered
+    }
+}